@@ -0,0 +1,54 @@
+package de.paystory.thermal_printer;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+
+import com.dantsu.escposprinter.connection.DeviceConnection;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Looking up a pooled connection from 8 threads, for one printer (all threads contend for the same
+ * key) and for 8 printers.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Threads(8)
+public class ConnectionPoolBenchmark {
+    @Param({"1", "8"})
+    public int printers;
+
+    private ConnectionPool connectionPool;
+    private String[] keys;
+
+    @Setup
+    public void setUp() {
+        this.connectionPool = new ConnectionPool(this.printers, 300000, 0);
+        this.keys = new String[this.printers];
+        for (int i = 0; i < this.printers; i++) {
+            this.keys[i] = "tcp-192.168.1." + (100 + i) + ":9100";
+            this.connectionPool.acquire(this.keys[i], () -> new ByteCaptureConnection(0));
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        this.connectionPool.shutdown();
+    }
+
+    @Benchmark
+    public DeviceConnection acquire() {
+        String key = this.keys[ThreadLocalRandom.current().nextInt(this.keys.length)];
+        return this.connectionPool.acquire(key, () -> new ByteCaptureConnection(0));
+    }
+}
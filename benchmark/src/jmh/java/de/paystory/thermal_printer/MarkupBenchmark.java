@@ -0,0 +1,94 @@
+package de.paystory.thermal_printer;
+
+import com.dantsu.escposprinter.EscPosPrinter;
+
+import org.json.JSONObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Converting the formatted text of a typical receipt to ESC/POS bytes, once with a new conversion
+ * of the whole text like printFormattedText and once with a registered template. Like the plugin,
+ * every render uses a new printer; the setup checks that repeated renders give identical bytes.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class MarkupBenchmark {
+    static final String RECEIPT_HEADER = "[C]<b><font size='big'>PAYSTORY CAFE</font></b>\n"
+        + "[C]Musterstrasse 1, 12345 Berlin\n"
+        + "[C]Tel. 030 1234567\n"
+        + "[L]\n"
+        + "[C]================================\n";
+    static final String RECEIPT_FOOTER = "[C]--------------------------------\n"
+        + "[R]<b>TOTAL :[R]{{total}} EUR</b>\n"
+        + "[R]VAT 19% :[R]{{vat}} EUR\n"
+        + "[L]\n"
+        + "[C]Order {{orderId}}\n"
+        + "[C]<b>Thank you for your visit!</b>\n";
+
+    @Param({"58", "80"})
+    public int paperWidth;
+
+    private ByteCaptureConnection captureConnection;
+    private String receipt;
+    private ReceiptTemplate template;
+    private JSONObject variables;
+    private String settingsKey;
+
+    @Setup
+    public void setUp() throws Exception {
+        this.settingsKey = "203|" + this.paperWidth;
+        this.captureConnection = new ByteCaptureConnection(4096);
+
+        StringBuilder items = new StringBuilder();
+        for (int i = 1; i <= 10; i++) {
+            items.append("[L]<b>Item ").append(i).append("</b>[R]").append(i).append(",90 EUR\n");
+            items.append("[L]  + Extra ").append(i).append("\n");
+        }
+        this.receipt = RECEIPT_HEADER + items + RECEIPT_FOOTER
+            .replace("{{total}}", "59,00")
+            .replace("{{vat}}", "9,42")
+            .replace("{{orderId}}", "#4711");
+        this.template = new ReceiptTemplate(RECEIPT_HEADER + items + RECEIPT_FOOTER);
+        this.variables = new JSONObject();
+        this.variables.put("total", "59,00");
+        this.variables.put("vat", "9,42");
+        this.variables.put("orderId", "#4711");
+        checkRepeatable("formattedText", this.formattedText(), this.formattedText());
+        checkRepeatable("template", this.template(), this.template());
+    }
+
+    @Benchmark
+    public byte[] formattedText() throws Exception {
+        this.captureConnection.reset();
+        this.createPrinter(this.captureConnection).printFormattedText(this.receipt, 0);
+        return this.captureConnection.toByteArray();
+    }
+
+    @Benchmark
+    public byte[] template() throws Exception {
+        return this.template.render(this.settingsKey, this::createPrinter, this.variables);
+    }
+
+    private static void checkRepeatable(String name, byte[] first, byte[] second) {
+        if (!Arrays.equals(first, second)) {
+            throw new IllegalStateException(name + ": the second render differs from the first one");
+        }
+    }
+
+    private EscPosPrinter createPrinter(ByteCaptureConnection connection) throws Exception {
+        return this.paperWidth == 58
+            ? new EscPosPrinter(connection, 203, 48f, 32)
+            : new EscPosPrinter(connection, 203, 72f, 48);
+    }
+}
@@ -0,0 +1,27 @@
+package de.paystory.thermal_printer;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Recording a stage timing from 8 threads, which happens several times for every print job.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Threads(8)
+public class PrintMetricsBenchmark {
+    private final PrintMetrics printMetrics = new PrintMetrics();
+
+    @Benchmark
+    public void record() {
+        this.printMetrics.recordDuration("tcp-192.168.1.100:9100", PrintMetrics.Stage.WRITE, System.nanoTime() & 0xFFFFFFFL);
+    }
+}
@@ -0,0 +1,48 @@
+package de.paystory.thermal_printer;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Rasterizing one band of an image to "GS v 0" commands at the width of 58 mm (384 dots) and 80 mm
+ * (576 dots) paper, the pure Java part of printImage and bitmapToHexadecimalString.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class RasterBenchmark {
+    @Param({"384", "576"})
+    public int width;
+
+    @Param({"false", "true"})
+    public boolean dither;
+
+    private int[] pixels;
+    private RasterEncoder encoder;
+
+    @Setup
+    public void setUp() {
+        int rows = RasterEncoder.MAX_BAND_HEIGHT;
+        this.pixels = new int[this.width * rows];
+        for (int y = 0; y < rows; y++) {
+            for (int x = 0; x < this.width; x++) {
+                int gray = (x * 255 / this.width + y) & 0xFF;
+                this.pixels[y * this.width + x] = 0xFF000000 | gray << 16 | gray << 8 | gray;
+            }
+        }
+        this.encoder = new RasterEncoder(this.width, this.dither);
+    }
+
+    @Benchmark
+    public byte[] encodeBand() {
+        return this.encoder.encode(this.pixels, RasterEncoder.MAX_BAND_HEIGHT);
+    }
+}
@@ -0,0 +1,55 @@
+package de.paystory.thermal_printer;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Writing a receipt (2 KB) and an image (64 KB) to a local TCP printer (TcpSinkServer) through the
+ * persistent TcpDeviceConnection in chunks, like the plugin does for network printers.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class TcpThroughputBenchmark {
+    @Param({"2048", "65536"})
+    public int size;
+
+    @Param({"4096", "16384"})
+    public int chunkSize;
+
+    private TcpSinkServer server;
+    private TcpDeviceConnection connection;
+    private byte[] bytes;
+
+    @Setup
+    public void setUp() throws Exception {
+        this.server = new TcpSinkServer(0, 0);
+        int port = this.server.start(0);
+        this.connection = new TcpDeviceConnection("127.0.0.1", port, 1000, 5000);
+        this.connection.connect();
+        this.bytes = new byte[this.size];
+        for (int i = 0; i < this.bytes.length; i++) {
+            this.bytes[i] = (byte) ('A' + i % 26);
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        this.connection.disconnect();
+        this.server.stop();
+    }
+
+    @Benchmark
+    public void write() throws Exception {
+        ConnectionWriter.write(this.connection, this.bytes, this.chunkSize);
+    }
+}
@@ -0,0 +1,167 @@
+package de.paystory.thermal_printer;
+
+import android.bluetooth.BluetoothAdapter;
+import android.bluetooth.BluetoothDevice;
+import android.bluetooth.BluetoothSocket;
+import android.os.ParcelUuid;
+
+import com.dantsu.escposprinter.connection.DeviceConnection;
+import com.dantsu.escposprinter.exceptions.EscPosConnectionException;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.UUID;
+
+/**
+ * Bluetooth connection which keeps the input stream of the socket, so the status of the printer
+ * can be read. Writes are paced by the readiness of the printer (GS r) when a ready timeout is set,
+ * otherwise like the library by sleeping 1 ms per 16 bytes.
+ */
+public class BluetoothDeviceConnection extends DeviceConnection implements DirectWriteConnection, StatusConnection {
+    private static final UUID SPP_UUID = UUID.fromString("00001101-0000-1000-8000-00805F9B34FB");
+
+    private final BluetoothDevice device;
+    private volatile BluetoothSocket socket = null;
+    private InputStream inputStream = null;
+    private volatile int readyTimeoutMs = 0;
+    private boolean answersReady = true;
+
+    public BluetoothDeviceConnection(BluetoothDevice device) {
+        super();
+        this.device = device;
+    }
+
+    public BluetoothDevice getDevice() {
+        return this.device;
+    }
+
+    @Override
+    public boolean isConnected() {
+        BluetoothSocket socket = this.socket;
+        return socket != null && socket.isConnected() && super.isConnected();
+    }
+
+    @Override
+    public synchronized BluetoothDeviceConnection connect() throws EscPosConnectionException {
+        if (this.isConnected()) {
+            return this;
+        }
+        if (this.device == null) {
+            throw new EscPosConnectionException("Bluetooth device is not connected.");
+        }
+        try {
+            this.socket = this.device.createRfcommSocketToServiceRecord(this.getDeviceUUID());
+            BluetoothAdapter bluetoothAdapter = BluetoothAdapter.getDefaultAdapter();
+            if (bluetoothAdapter != null) {
+                bluetoothAdapter.cancelDiscovery();
+            }
+            this.socket.connect();
+            this.outputStream = this.socket.getOutputStream();
+            this.inputStream = this.socket.getInputStream();
+            this.data = new byte[0];
+            this.answersReady = true;
+        } catch (IOException | SecurityException e) {
+            this.disconnect();
+            throw new EscPosConnectionException("Unable to connect to bluetooth device.");
+        }
+        return this;
+    }
+
+    @Override
+    public synchronized BluetoothDeviceConnection disconnect() {
+        this.data = new byte[0];
+        if (this.outputStream != null) {
+            try {
+                this.outputStream.close();
+            } catch (IOException ignored) {}
+            this.outputStream = null;
+        }
+        this.inputStream = null;
+        if (this.socket != null) {
+            try {
+                this.socket.close();
+            } catch (IOException ignored) {}
+            this.socket = null;
+        }
+        return this;
+    }
+
+    @Override
+    public synchronized void send(int addWaitingTime) throws EscPosConnectionException {
+        byte[] data = this.data;
+        this.data = new byte[0];
+        this.writeDirect(data, 0, data.length);
+        this.sleep(addWaitingTime);
+    }
+
+    @Override
+    public synchronized void writeDirect(byte[] bytes, int offset, int length) throws EscPosConnectionException {
+        if (!this.isConnected()) {
+            throw new EscPosConnectionException("Unable to send data to device.");
+        }
+        if (this.data.length > 0) {
+            byte[] data = this.data;
+            this.data = new byte[0];
+            this.writeDirect(data, 0, data.length);
+        }
+        if (length == 0) {
+            return;
+        }
+        try {
+            this.outputStream.write(bytes, offset, length);
+            this.outputStream.flush();
+        } catch (IOException e) {
+            this.disconnect();
+            throw new EscPosConnectionException(e.getMessage());
+        }
+        if (this.readyTimeoutMs > 0 && this.answersReady) {
+            if (PrinterStatus.waitUntilReady(this, this.readyTimeoutMs)) {
+                return;
+            }
+            this.answersReady = false;
+        }
+        this.sleep(length / 16);
+    }
+
+    @Override
+    public synchronized int requestStatus(byte[] command, int timeoutMs) throws EscPosConnectionException {
+        if (!this.isConnected()) {
+            throw new EscPosConnectionException("Unable to send data to device.");
+        }
+        try {
+            PrinterStatus.skipAvailable(this.inputStream);
+            this.outputStream.write(command);
+            this.outputStream.flush();
+            return PrinterStatus.read(this.inputStream, timeoutMs);
+        } catch (IOException e) {
+            this.disconnect();
+            throw new EscPosConnectionException(e.getMessage());
+        }
+    }
+
+    @Override
+    public void setReadyTimeout(int readyTimeoutMs) {
+        this.readyTimeoutMs = Math.max(0, readyTimeoutMs);
+    }
+
+    private UUID getDeviceUUID() {
+        ParcelUuid[] uuids = this.device.getUuids();
+        if (uuids == null || uuids.length == 0 || Arrays.asList(uuids).contains(new ParcelUuid(SPP_UUID))) {
+            return SPP_UUID;
+        }
+        return uuids[0].getUuid();
+    }
+
+    private void sleep(int milliseconds) throws EscPosConnectionException {
+        if (milliseconds <= 0) {
+            return;
+        }
+        try {
+            Thread.sleep(milliseconds);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new EscPosConnectionException(e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package de.paystory.thermal_printer;
+
+import com.dantsu.escposprinter.connection.DeviceConnection;
+
+import java.io.ByteArrayOutputStream;
+
+/**
+ * In-memory connection that collects the ESC/POS bytes rendered by an EscPosPrinter instead of
+ * sending them to a device, so several documents can be written to the printer in one go.
+ */
+public class ByteCaptureConnection extends DeviceConnection implements DirectWriteConnection {
+    private static class Buffer extends ByteArrayOutputStream {
+        private Buffer(int initialCapacity) {
+            super(initialCapacity);
+        }
+
+        private synchronized void truncate(int size) {
+            this.count = Math.max(0, Math.min(this.count, size));
+        }
+    }
+
+    private final Buffer buffer;
+
+    public ByteCaptureConnection(int initialCapacity) {
+        super();
+        this.buffer = new Buffer(initialCapacity);
+        this.outputStream = this.buffer;
+    }
+
+    @Override
+    public ByteCaptureConnection connect() {
+        return this;
+    }
+
+    @Override
+    public ByteCaptureConnection disconnect() {
+        return this;
+    }
+
+    @Override
+    public boolean isConnected() {
+        return true;
+    }
+
+    @Override
+    public void write(byte[] bytes) {
+        this.buffer.write(bytes, 0, bytes.length);
+    }
+
+    @Override
+    public void writeDirect(byte[] bytes, int offset, int length) {
+        this.buffer.write(bytes, offset, length);
+    }
+
+    @Override
+    public void send(int addWaitingTime) {
+    }
+
+    public int size() {
+        return this.buffer.size();
+    }
+
+    public byte[] toByteArray() {
+        return this.buffer.toByteArray();
+    }
+
+    public void reset() {
+        this.buffer.reset();
+    }
+
+    /**
+     * Drops everything written after the buffer had the given size, e.g. a partly rendered document.
+     */
+    public void truncate(int size) {
+        this.buffer.truncate(size);
+    }
+}
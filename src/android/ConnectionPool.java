@@ -0,0 +1,324 @@
+package de.paystory.thermal_printer;
+
+import com.dantsu.escposprinter.connection.DeviceConnection;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Thread-safe cache of open device connections. The number of open connections is bounded, idle
+ * connections are closed after a timeout and dropped connections are detected by a periodic
+ * health check. Connections are only closed through the executor of their key (the job queue of
+ * the printer), so they are never closed while a job is writing to them.
+ */
+public class ConnectionPool {
+    public interface Factory {
+        DeviceConnection create();
+    }
+
+    public interface KeepAliveHandler {
+        void keepAlive(String key, DeviceConnection connection);
+    }
+
+    public interface ReconnectListener {
+        void onReconnect(String key, long startedAtNanos, boolean success);
+    }
+
+    public interface KeyExecutor {
+        void execute(String key, Runnable runnable);
+    }
+
+    private static class Entry {
+        private final DeviceConnection connection;
+        private final long createdAt = System.currentTimeMillis();
+        private volatile long lastUsedAt = System.currentTimeMillis();
+        private volatile long lastKeepAliveAt = System.currentTimeMillis();
+        private final AtomicLong uses = new AtomicLong();
+        private volatile boolean evictionQueued = false;
+
+        private Entry(DeviceConnection connection) {
+            this.connection = connection;
+        }
+
+        private void touch() {
+            this.lastUsedAt = System.currentTimeMillis();
+            this.uses.incrementAndGet();
+        }
+    }
+
+    private final ConcurrentHashMap<String, Entry> entries = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, Object> locks = new ConcurrentHashMap<>();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong reconnects = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private final int maxConnections;
+    private final long idleTimeoutMs;
+    private final long keepAliveIntervalMs;
+    private volatile KeepAliveHandler keepAliveHandler;
+    private volatile ReconnectListener reconnectListener;
+    private volatile KeyExecutor keyExecutor;
+    private ScheduledExecutorService maintenance;
+
+    public ConnectionPool(int maxConnections, long idleTimeoutMs, long keepAliveIntervalMs) {
+        this.maxConnections = Math.max(1, maxConnections);
+        this.idleTimeoutMs = idleTimeoutMs;
+        this.keepAliveIntervalMs = keepAliveIntervalMs;
+    }
+
+    public void setKeepAliveHandler(KeepAliveHandler keepAliveHandler) {
+        this.keepAliveHandler = keepAliveHandler;
+    }
+
+    public void setReconnectListener(ReconnectListener reconnectListener) {
+        this.reconnectListener = reconnectListener;
+    }
+
+    /**
+     * Runs the closing of evicted connections on the thread owning the key. Without an executor
+     * they are closed on the calling thread.
+     */
+    public void setKeyExecutor(KeyExecutor keyExecutor) {
+        this.keyExecutor = keyExecutor;
+    }
+
+    public synchronized void start() {
+        if (this.maintenance != null) {
+            return;
+        }
+        long period = this.idleTimeoutMs > 0 ? this.idleTimeoutMs / 2 : 30000;
+        if (this.keepAliveIntervalMs > 0) {
+            period = Math.min(period, this.keepAliveIntervalMs);
+        }
+        period = Math.max(period, 1000);
+        this.maintenance = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "ThermalPrinter-ConnectionPool");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.maintenance.scheduleWithFixedDelay(this::maintain, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    public synchronized void shutdown() {
+        if (this.maintenance != null) {
+            this.maintenance.shutdownNow();
+            this.maintenance = null;
+        }
+        for (String key : this.entries.keySet()) {
+            this.runForKey(key, () -> this.evict(key));
+        }
+    }
+
+    public DeviceConnection acquire(String key, Factory factory) {
+        while (true) {
+            Object lock = this.lockFor(key);
+            DeviceConnection connection;
+            synchronized (lock) {
+                // the lock was removed by evict() while waiting for it
+                if (this.locks.get(key) != lock) {
+                    continue;
+                }
+                connection = this.acquireLocked(key, lock, factory);
+            }
+            this.ensureCapacity(key);
+            return connection;
+        }
+    }
+
+    private DeviceConnection acquireLocked(String key, Object lock, Factory factory) {
+        Entry entry = this.entries.get(key);
+        if (entry != null) {
+            if (entry.connection.isConnected()) {
+                this.hits.incrementAndGet();
+                entry.touch();
+                return entry.connection;
+            }
+            this.reconnects.incrementAndGet();
+            long startedAt = System.nanoTime();
+            try {
+                entry.connection.connect();
+                this.notifyReconnect(key, startedAt, true);
+                entry.touch();
+                return entry.connection;
+            } catch (Exception e) {
+                this.notifyReconnect(key, startedAt, false);
+                this.remove(key, entry);
+            }
+        } else {
+            this.misses.incrementAndGet();
+        }
+
+        DeviceConnection connection = factory.create();
+        if (connection == null) {
+            this.locks.remove(key, lock);
+            return null;
+        }
+        Entry created = new Entry(connection);
+        created.touch();
+        this.entries.put(key, created);
+        return connection;
+    }
+
+    public boolean contains(String key) {
+        return this.entries.containsKey(key);
+    }
+
+    public ArrayList<String> getKeys() {
+        return new ArrayList<>(this.entries.keySet());
+    }
+
+    /**
+     * Closes and removes the connection of the key. Must be called on the thread owning the key,
+     * e.g. from the job queue of the printer.
+     */
+    public void evict(String key) {
+        Object lock = this.locks.get(key);
+        if (lock == null) {
+            Entry entry = this.entries.get(key);
+            if (entry != null) {
+                this.remove(key, entry);
+            }
+            return;
+        }
+        synchronized (lock) {
+            Entry entry = this.entries.get(key);
+            if (entry != null) {
+                this.remove(key, entry);
+            }
+            this.locks.remove(key, lock);
+        }
+    }
+
+    public JSONObject getStats() throws JSONException {
+        long now = System.currentTimeMillis();
+        JSONArray connections = new JSONArray();
+        for (Map.Entry<String, Entry> mapEntry : this.entries.entrySet()) {
+            Entry entry = mapEntry.getValue();
+            JSONObject connection = new JSONObject();
+            connection.put("key", mapEntry.getKey());
+            connection.put("connected", entry.connection.isConnected());
+            connection.put("uses", entry.uses.get());
+            connection.put("ageMs", now - entry.createdAt);
+            connection.put("idleMs", now - entry.lastUsedAt);
+            connections.put(connection);
+        }
+        JSONObject stats = new JSONObject();
+        stats.put("open", this.entries.size());
+        stats.put("maxConnections", this.maxConnections);
+        stats.put("idleTimeoutMs", this.idleTimeoutMs);
+        stats.put("keepAliveIntervalMs", this.keepAliveIntervalMs);
+        stats.put("hits", this.hits.get());
+        stats.put("misses", this.misses.get());
+        stats.put("reconnects", this.reconnects.get());
+        stats.put("evictions", this.evictions.get());
+        stats.put("connections", connections);
+        return stats;
+    }
+
+    private void notifyReconnect(String key, long startedAtNanos, boolean success) {
+        ReconnectListener listener = this.reconnectListener;
+        if (listener != null) {
+            listener.onReconnect(key, startedAtNanos, success);
+        }
+    }
+
+    private Object lockFor(String key) {
+        return this.locks.computeIfAbsent(key, k -> new Object());
+    }
+
+    private void remove(String key, Entry entry) {
+        if (!this.entries.remove(key, entry)) {
+            return;
+        }
+        this.evictions.incrementAndGet();
+        try {
+            entry.connection.disconnect();
+        } catch (Exception ignored) {}
+    }
+
+    private void runForKey(String key, Runnable runnable) {
+        KeyExecutor keyExecutor = this.keyExecutor;
+        if (keyExecutor != null) {
+            keyExecutor.execute(key, runnable);
+        } else {
+            runnable.run();
+        }
+    }
+
+    /**
+     * Queues the eviction of the entry on the thread owning its key, unless it is already queued.
+     */
+    private void scheduleEviction(String key, Entry entry, boolean onlyIfUnused) {
+        if (entry.evictionQueued) {
+            return;
+        }
+        entry.evictionQueued = true;
+        this.runForKey(key, () -> {
+            entry.evictionQueued = false;
+            if (this.entries.get(key) != entry) {
+                return;
+            }
+            if (onlyIfUnused && !this.isExpired(entry, System.currentTimeMillis())) {
+                return;
+            }
+            this.evict(key);
+        });
+    }
+
+    private boolean isExpired(Entry entry, long now) {
+        return this.idleTimeoutMs > 0 && now - entry.lastUsedAt > this.idleTimeoutMs || !entry.connection.isConnected();
+    }
+
+    /**
+     * Makes room for a new connection. The least recently used connection is closed on the thread
+     * of its own printer, the new connection may exceed the limit until that has happened.
+     */
+    private void ensureCapacity(String acquiredKey) {
+        int queued = 0;
+        for (Entry entry : this.entries.values()) {
+            if (entry.evictionQueued) {
+                queued++;
+            }
+        }
+        if (this.entries.size() - queued > this.maxConnections) {
+            String leastRecentlyUsed = null;
+            long oldest = Long.MAX_VALUE;
+            for (Map.Entry<String, Entry> mapEntry : this.entries.entrySet()) {
+                if (!mapEntry.getKey().equals(acquiredKey) && !mapEntry.getValue().evictionQueued && mapEntry.getValue().lastUsedAt < oldest) {
+                    oldest = mapEntry.getValue().lastUsedAt;
+                    leastRecentlyUsed = mapEntry.getKey();
+                }
+            }
+            Entry entry = leastRecentlyUsed != null ? this.entries.get(leastRecentlyUsed) : null;
+            if (entry != null) {
+                this.scheduleEviction(leastRecentlyUsed, entry, false);
+            }
+        }
+    }
+
+    private void maintain() {
+        long now = System.currentTimeMillis();
+        for (Map.Entry<String, Entry> mapEntry : this.entries.entrySet()) {
+            String key = mapEntry.getKey();
+            Entry entry = mapEntry.getValue();
+            try {
+                if (this.isExpired(entry, now)) {
+                    this.scheduleEviction(key, entry, true);
+                } else if (this.keepAliveIntervalMs > 0 && this.keepAliveHandler != null
+                    && now - Math.max(entry.lastUsedAt, entry.lastKeepAliveAt) > this.keepAliveIntervalMs) {
+                    entry.lastKeepAliveAt = now;
+                    this.keepAliveHandler.keepAlive(key, entry.connection);
+                }
+            } catch (Exception ignored) {}
+        }
+    }
+}
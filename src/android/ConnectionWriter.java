@@ -0,0 +1,34 @@
+package de.paystory.thermal_printer;
+
+import com.dantsu.escposprinter.connection.DeviceConnection;
+import com.dantsu.escposprinter.exceptions.EscPosConnectionException;
+
+import java.util.Arrays;
+
+/**
+ * Writes large byte arrays to a device connection in chunks.
+ */
+public class ConnectionWriter {
+    public static final int DEFAULT_CHUNK_SIZE = 16 * 1024;
+
+    public static void write(DeviceConnection connection, byte[] bytes, int chunkSize) throws EscPosConnectionException {
+        write(connection, bytes, 0, bytes.length, chunkSize);
+    }
+
+    public static void write(DeviceConnection connection, byte[] bytes, int offset, int length, int chunkSize) throws EscPosConnectionException {
+        if (!connection.isConnected()) {
+            connection.connect();
+        }
+        chunkSize = chunkSize > 0 ? chunkSize : DEFAULT_CHUNK_SIZE;
+        int end = offset + length;
+        for (int position = offset; position < end; position += chunkSize) {
+            int size = Math.min(chunkSize, end - position);
+            if (connection instanceof DirectWriteConnection) {
+                ((DirectWriteConnection) connection).writeDirect(bytes, position, size);
+            } else {
+                connection.write(position == 0 && size == bytes.length ? bytes : Arrays.copyOfRange(bytes, position, position + size));
+                connection.send();
+            }
+        }
+    }
+}
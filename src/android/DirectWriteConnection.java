@@ -0,0 +1,11 @@
+package de.paystory.thermal_printer;
+
+import com.dantsu.escposprinter.exceptions.EscPosConnectionException;
+
+/**
+ * Connection that can write a slice of a byte array straight to the device, without copying it into
+ * the pending data buffer of DeviceConnection first.
+ */
+public interface DirectWriteConnection {
+    void writeDirect(byte[] bytes, int offset, int length) throws EscPosConnectionException;
+}
@@ -0,0 +1,252 @@
+package de.paystory.thermal_printer;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * LRU cache of rasterized images (ESC/POS "GS v 0" commands) keyed by a hash of the source image
+ * and the printer settings. The memory use is bounded, entries can optionally be persisted on disk
+ * with a separate size limit, then the least recently used files are deleted first.
+ */
+public class ImageCache {
+    public static final Pattern IMAGE_REFERENCE = Pattern.compile("<img\\s+ref=\"([0-9a-f]+)\"\\s*/?>(\\s*</img>)?");
+    private static final char[] HEX_DIGITS = "0123456789ABCDEF".toCharArray();
+
+    private final LinkedHashMap<String, byte[]> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final long maxBytes;
+    private final File directory;
+    private final long maxDiskBytes;
+    private long bytes = 0;
+    private long diskBytes = 0;
+    private long hits = 0;
+    private long misses = 0;
+
+    public ImageCache(long maxBytes, File directory, long maxDiskBytes) {
+        this.maxBytes = maxBytes;
+        this.directory = directory;
+        this.maxDiskBytes = maxDiskBytes;
+        if (this.directory != null && !this.directory.isDirectory()) {
+            this.directory.mkdirs();
+        }
+        if (this.directory != null) {
+            File[] files = this.directory.listFiles();
+            for (int i = 0; files != null && i < files.length; i++) {
+                if (files[i].getName().endsWith(".tmp")) {
+                    files[i].delete();
+                } else {
+                    this.diskBytes += files[i].length();
+                }
+            }
+            this.trimDisk(null);
+        }
+    }
+
+    public static String key(byte[] image, String printerSettingsKey) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(image);
+            digest.update(printerSettingsKey.getBytes(StandardCharsets.UTF_8));
+            byte[] hash = digest.digest();
+            char[] key = new char[32];
+            for (int i = 0; i < 16; i++) {
+                key[i * 2] = Character.forDigit((hash[i] >> 4) & 0xF, 16);
+                key[i * 2 + 1] = Character.forDigit(hash[i] & 0xF, 16);
+            }
+            return new String(key);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    public synchronized byte[] get(String key) {
+        byte[] raster = this.entries.get(key);
+        if (raster == null && this.directory != null) {
+            raster = this.readFromDisk(key);
+            if (raster != null) {
+                this.putInMemory(key, raster);
+            }
+        }
+        if (raster != null) {
+            this.hits++;
+        } else {
+            this.misses++;
+        }
+        return raster;
+    }
+
+    public synchronized void put(String key, byte[] raster) {
+        this.putInMemory(key, raster);
+        if (this.directory != null) {
+            this.writeToDisk(key, raster);
+        }
+    }
+
+    public synchronized void clear() {
+        this.entries.clear();
+        this.bytes = 0;
+        this.diskBytes = 0;
+        if (this.directory != null) {
+            File[] files = this.directory.listFiles();
+            if (files != null) {
+                for (File file : files) {
+                    file.delete();
+                }
+            }
+        }
+    }
+
+    public synchronized JSONObject getStats() throws JSONException {
+        JSONObject stats = new JSONObject();
+        stats.put("entries", this.entries.size());
+        stats.put("bytes", this.bytes);
+        stats.put("maxBytes", this.maxBytes);
+        stats.put("hits", this.hits);
+        stats.put("misses", this.misses);
+        stats.put("persistent", this.directory != null);
+        if (this.directory != null) {
+            stats.put("diskBytes", this.diskBytes);
+            stats.put("maxDiskBytes", this.maxDiskBytes);
+        }
+        return stats;
+    }
+
+    /**
+     * Replaces every &lt;img ref="..."&gt; by an &lt;img&gt; tag with the hexadecimal string of the
+     * cached image, for places where the formatted text has to be parsed as a whole.
+     */
+    public String expandReferences(String text) {
+        Matcher matcher = IMAGE_REFERENCE.matcher(text);
+        StringBuffer expanded = new StringBuffer(text.length());
+        while (matcher.find()) {
+            byte[] raster = this.get(matcher.group(1));
+            if (raster == null) {
+                throw new IllegalArgumentException("Image " + matcher.group(1) + " is not cached!");
+            }
+            matcher.appendReplacement(expanded, "<img>" + toHexadecimalString(raster) + "</img>");
+        }
+        matcher.appendTail(expanded);
+        return expanded.toString();
+    }
+
+    public static String toHexadecimalString(byte[] bytes) {
+        char[] hex = new char[bytes.length * 2];
+        for (int i = 0; i < bytes.length; i++) {
+            hex[i * 2] = HEX_DIGITS[(bytes[i] >> 4) & 0xF];
+            hex[i * 2 + 1] = HEX_DIGITS[bytes[i] & 0xF];
+        }
+        return new String(hex);
+    }
+
+    public static byte[] fromHexadecimalString(String hex) {
+        byte[] bytes = new byte[hex.length() / 2];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = (byte) ((Character.digit(hex.charAt(i * 2), 16) << 4) | Character.digit(hex.charAt(i * 2 + 1), 16));
+        }
+        return bytes;
+    }
+
+    private void putInMemory(String key, byte[] raster) {
+        byte[] previous = this.entries.put(key, raster);
+        if (previous != null) {
+            this.bytes -= previous.length;
+        }
+        this.bytes += raster.length;
+        Iterator<Map.Entry<String, byte[]>> iterator = this.entries.entrySet().iterator();
+        while (this.bytes > this.maxBytes && iterator.hasNext()) {
+            Map.Entry<String, byte[]> eldest = iterator.next();
+            if (eldest.getKey().equals(key)) {
+                continue;
+            }
+            this.bytes -= eldest.getValue().length;
+            iterator.remove();
+        }
+    }
+
+    private byte[] readFromDisk(String key) {
+        File file = new File(this.directory, key);
+        if (!file.isFile()) {
+            return null;
+        }
+        byte[] raster = new byte[(int) file.length()];
+        try (FileInputStream inputStream = new FileInputStream(file)) {
+            int offset = 0;
+            while (offset < raster.length) {
+                int read = inputStream.read(raster, offset, raster.length - offset);
+                if (read < 0) {
+                    return null;
+                }
+                offset += read;
+            }
+            file.setLastModified(System.currentTimeMillis());
+            return raster;
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private void writeToDisk(String key, byte[] raster) {
+        if (raster.length > this.maxDiskBytes) {
+            return;
+        }
+        File file = new File(this.directory, key);
+        long previousLength = file.length();
+        File temporaryFile = new File(this.directory, key + ".tmp");
+        try (FileOutputStream outputStream = new FileOutputStream(temporaryFile)) {
+            outputStream.write(raster);
+        } catch (IOException e) {
+            temporaryFile.delete();
+            return;
+        }
+        if (!temporaryFile.renameTo(file)) {
+            temporaryFile.delete();
+            return;
+        }
+        this.diskBytes += raster.length - previousLength;
+        this.trimDisk(key);
+    }
+
+    /**
+     * Deletes the oldest files (by last modification, which is updated on reads) until the disk
+     * tier fits into its size limit again. The file of the key just written is kept.
+     */
+    private void trimDisk(String keep) {
+        if (this.diskBytes <= this.maxDiskBytes) {
+            return;
+        }
+        File[] files = this.directory.listFiles();
+        if (files == null) {
+            return;
+        }
+        long[] lastModified = new long[files.length];
+        Integer[] order = new Integer[files.length];
+        for (int i = 0; i < files.length; i++) {
+            lastModified[i] = files[i].lastModified();
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> Long.compare(lastModified[a], lastModified[b]));
+        for (int i = 0; i < order.length && this.diskBytes > this.maxDiskBytes; i++) {
+            File file = files[order[i]];
+            if (file.getName().equals(keep) || file.getName().endsWith(".tmp")) {
+                continue;
+            }
+            long length = file.length();
+            if (file.delete()) {
+                this.diskBytes -= length;
+            }
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package de.paystory.thermal_printer;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.BitmapRegionDecoder;
+import android.graphics.Rect;
+
+import java.io.IOException;
+
+/**
+ * Decodes pictures scaled down to the printer width and rasterizes them in horizontal bands, so the
+ * peak memory only depends on the printer width and the band height, not on the picture height.
+ */
+public class ImageRasterizer {
+    public static final int DEFAULT_BAND_HEIGHT = 128;
+
+    public interface BandConsumer {
+        void onBand(byte[] band) throws Exception;
+    }
+
+    public static BitmapFactory.Options decodeBounds(byte[] image) throws Exception {
+        BitmapFactory.Options bounds = new BitmapFactory.Options();
+        bounds.inJustDecodeBounds = true;
+        BitmapFactory.decodeByteArray(image, 0, image.length, bounds);
+        if (bounds.outWidth <= 0 || bounds.outHeight <= 0) {
+            throw new Exception("Unable to decode the image!");
+        }
+        return bounds;
+    }
+
+    public static int getSampleSize(int imageWidth, int targetWidth) {
+        int sampleSize = 1;
+        while (imageWidth / (sampleSize * 2) >= targetWidth) {
+            sampleSize *= 2;
+        }
+        return sampleSize;
+    }
+
+    /**
+     * Decodes the picture with the largest power of two subsampling that keeps it at least as wide
+     * as the printer, instead of decoding it at full resolution.
+     */
+    public static Bitmap decodeSampled(byte[] image, int targetWidth) throws Exception {
+        BitmapFactory.Options bounds = decodeBounds(image);
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inSampleSize = getSampleSize(bounds.outWidth, targetWidth);
+        Bitmap bitmap = BitmapFactory.decodeByteArray(image, 0, image.length, options);
+        if (bitmap == null) {
+            throw new Exception("Unable to decode the image!");
+        }
+        return bitmap;
+    }
+
+    public static void rasterize(byte[] image, int targetWidth, int bandHeight, boolean dither, BandConsumer consumer) throws Exception {
+        BitmapFactory.Options bounds = decodeBounds(image);
+        int width = Math.min(targetWidth, bounds.outWidth);
+        float scale = (float) width / bounds.outWidth;
+        int height = Math.max(1, Math.round(bounds.outHeight * scale));
+        bandHeight = Math.max(1, Math.min(bandHeight, RasterEncoder.MAX_BAND_HEIGHT));
+
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inSampleSize = getSampleSize(bounds.outWidth, width);
+        options.inPreferredConfig = Bitmap.Config.ARGB_8888;
+
+        BitmapRegionDecoder decoder = null;
+        Bitmap sampledBitmap = null;
+        try {
+            decoder = BitmapRegionDecoder.newInstance(image, 0, image.length, false);
+        } catch (IOException e) {
+            sampledBitmap = BitmapFactory.decodeByteArray(image, 0, image.length, options);
+            if (sampledBitmap == null) {
+                throw new Exception("Unable to decode the image!");
+            }
+        }
+
+        RasterEncoder encoder = new RasterEncoder(width, dither);
+        int[] pixels = new int[width * bandHeight];
+        try {
+            for (int y = 0; y < height; y += bandHeight) {
+                int rows = Math.min(bandHeight, height - y);
+                int sourceTop = Math.min(bounds.outHeight - 1, (int) Math.floor(y / scale));
+                int sourceBottom = Math.max(sourceTop + 1, Math.min(bounds.outHeight, (int) Math.ceil((y + rows) / scale)));
+
+                Bitmap region;
+                if (decoder != null) {
+                    region = decoder.decodeRegion(new Rect(0, sourceTop, bounds.outWidth, sourceBottom), options);
+                } else {
+                    float sampledScale = (float) sampledBitmap.getHeight() / bounds.outHeight;
+                    int sampledTop = Math.min(sampledBitmap.getHeight() - 1, (int) (sourceTop * sampledScale));
+                    int sampledBottom = Math.max(sampledTop + 1, Math.min(sampledBitmap.getHeight(), (int) Math.ceil(sourceBottom * sampledScale)));
+                    region = Bitmap.createBitmap(sampledBitmap, 0, sampledTop, sampledBitmap.getWidth(), sampledBottom - sampledTop);
+                }
+                if (region == null) {
+                    throw new Exception("Unable to decode the image!");
+                }
+                Bitmap scaled = Bitmap.createScaledBitmap(region, width, rows, true);
+                scaled.getPixels(pixels, 0, width, 0, 0, width, rows);
+                if (scaled != region) {
+                    scaled.recycle();
+                }
+                if (region != sampledBitmap) {
+                    region.recycle();
+                }
+                consumer.onBand(encoder.encode(pixels, rows));
+            }
+        } finally {
+            if (decoder != null) {
+                decoder.recycle();
+            }
+            if (sampledBitmap != null) {
+                sampledBitmap.recycle();
+            }
+        }
+    }
+}
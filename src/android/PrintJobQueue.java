@@ -0,0 +1,194 @@
+package de.paystory.thermal_printer;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Serializes jobs per printer: every printer key gets its own single threaded worker, so jobs for
+ * one printer run in submission order while different printers are served in parallel.
+ */
+public class PrintJobQueue {
+    private static final int MAX_FINISHED_JOBS = 200;
+
+    public enum Status { QUEUED, PRINTING, DONE, FAILED }
+
+    public interface Task {
+        void run(PrintJob job) throws Exception;
+    }
+
+    public interface Listener {
+        void onStatusChanged(PrintJob job);
+    }
+
+    public static class PrintJob {
+        private final String id;
+        private final String printerKey;
+        private final long queuedAt = System.currentTimeMillis();
+        private volatile Status status = Status.QUEUED;
+        private volatile long startedAt;
+        private volatile long finishedAt;
+        private volatile String error;
+
+        private PrintJob(String id, String printerKey) {
+            this.id = id;
+            this.printerKey = printerKey;
+        }
+
+        public String getId() {
+            return this.id;
+        }
+
+        public String getPrinterKey() {
+            return this.printerKey;
+        }
+
+        public Status getStatus() {
+            return this.status;
+        }
+
+        public String getError() {
+            return this.error;
+        }
+
+        public JSONObject toJSON() throws JSONException {
+            JSONObject json = new JSONObject();
+            json.put("jobId", this.id);
+            json.put("printer", this.printerKey);
+            json.put("status", this.status.name().toLowerCase());
+            json.put("queuedAt", this.queuedAt);
+            if (this.startedAt > 0) {
+                json.put("startedAt", this.startedAt);
+            }
+            if (this.finishedAt > 0) {
+                json.put("finishedAt", this.finishedAt);
+            }
+            if (this.error != null) {
+                json.put("error", this.error);
+            }
+            return json;
+        }
+    }
+
+    private static class Worker {
+        private final ExecutorService executor;
+        private final AtomicInteger pending = new AtomicInteger();
+        private final AtomicLong completed = new AtomicLong();
+        private final AtomicLong failed = new AtomicLong();
+        private volatile PrintJob activeJob;
+
+        private Worker(String printerKey) {
+            this.executor = Executors.newSingleThreadExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "ThermalPrinter-" + printerKey);
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+
+    private final ConcurrentHashMap<String, Worker> workers = new ConcurrentHashMap<>();
+    private final Map<String, PrintJob> jobs = new LinkedHashMap<String, PrintJob>() {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, PrintJob> eldest) {
+            return this.size() > MAX_FINISHED_JOBS && eldest.getValue().status != Status.QUEUED && eldest.getValue().status != Status.PRINTING;
+        }
+    };
+    private final AtomicLong jobCounter = new AtomicLong();
+
+    public PrintJob submit(String printerKey, Task task, Listener listener) {
+        PrintJob job = new PrintJob("job-" + System.currentTimeMillis() + "-" + this.jobCounter.incrementAndGet(), printerKey);
+        synchronized (this.jobs) {
+            this.jobs.put(job.id, job);
+        }
+        Worker worker = this.workers.computeIfAbsent(printerKey, Worker::new);
+        worker.pending.incrementAndGet();
+        this.notify(listener, job);
+        worker.executor.execute(() -> {
+            worker.pending.decrementAndGet();
+            worker.activeJob = job;
+            job.startedAt = System.currentTimeMillis();
+            job.status = Status.PRINTING;
+            this.notify(listener, job);
+            try {
+                task.run(job);
+                job.status = Status.DONE;
+                worker.completed.incrementAndGet();
+            } catch (Exception e) {
+                job.error = e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName();
+                job.status = Status.FAILED;
+                worker.failed.incrementAndGet();
+            } finally {
+                job.finishedAt = System.currentTimeMillis();
+                worker.activeJob = null;
+            }
+            this.notify(listener, job);
+        });
+        return job;
+    }
+
+    public void execute(String printerKey, Runnable runnable) {
+        this.workers.computeIfAbsent(printerKey, Worker::new).executor.execute(runnable);
+    }
+
+    public int getPendingCount(String printerKey) {
+        Worker worker = this.workers.get(printerKey);
+        return worker != null ? worker.pending.get() : 0;
+    }
+
+    public PrintJob getJob(String jobId) {
+        synchronized (this.jobs) {
+            return this.jobs.get(jobId);
+        }
+    }
+
+    public JSONObject getStatus() throws JSONException {
+        JSONArray printers = new JSONArray();
+        for (Map.Entry<String, Worker> entry : this.workers.entrySet()) {
+            Worker worker = entry.getValue();
+            PrintJob activeJob = worker.activeJob;
+            JSONObject printer = new JSONObject();
+            printer.put("printer", entry.getKey());
+            printer.put("pending", worker.pending.get());
+            printer.put("activeJobId", activeJob != null ? activeJob.id : JSONObject.NULL);
+            printer.put("completed", worker.completed.get());
+            printer.put("failed", worker.failed.get());
+            printers.put(printer);
+        }
+        JSONArray jobs = new JSONArray();
+        ArrayList<PrintJob> snapshot;
+        synchronized (this.jobs) {
+            snapshot = new ArrayList<>(this.jobs.values());
+        }
+        for (PrintJob job : snapshot) {
+            jobs.put(job.toJSON());
+        }
+        JSONObject status = new JSONObject();
+        status.put("printers", printers);
+        status.put("jobs", jobs);
+        return status;
+    }
+
+    public void shutdown() {
+        for (Worker worker : this.workers.values()) {
+            worker.executor.shutdown();
+        }
+        this.workers.clear();
+    }
+
+    private void notify(Listener listener, PrintJob job) {
+        if (listener != null) {
+            try {
+                listener.onStatusChanged(job);
+            } catch (Exception ignored) {}
+        }
+    }
+}
@@ -0,0 +1,187 @@
+package de.paystory.thermal_printer;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Per printer timings of the print path stages and counters for bytes, reconnects and failures.
+ * Recording a timing only increments a few atomic counters of a log-linear histogram, so it can
+ * stay enabled in production.
+ */
+public class PrintMetrics {
+    public enum Stage {
+        LOOKUP, CONNECT, PRINTER, RENDER, IMAGE, WRITE, TOTAL;
+
+        private String getName() {
+            return this.name().toLowerCase(Locale.ROOT);
+        }
+    }
+
+    /**
+     * Histogram of durations in microseconds. Every power of two is split in 4 buckets, so a
+     * percentile is accurate to about 19%.
+     */
+    public static class Histogram {
+        private static final int SUB_BUCKETS = 4;
+        private static final int BUCKETS = 40 * SUB_BUCKETS;
+
+        private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+        private final AtomicLong count = new AtomicLong();
+        private final AtomicLong sum = new AtomicLong();
+        private final AtomicLong max = new AtomicLong();
+
+        public void record(long micros) {
+            micros = Math.max(1, micros);
+            this.buckets.incrementAndGet(bucketOf(micros));
+            this.count.incrementAndGet();
+            this.sum.addAndGet(micros);
+            long currentMax;
+            while (micros > (currentMax = this.max.get()) && !this.max.compareAndSet(currentMax, micros)) {
+                // retry
+            }
+        }
+
+        public long getCount() {
+            return this.count.get();
+        }
+
+        public double getPercentileMs(double percentile) {
+            long count = this.count.get();
+            if (count == 0) {
+                return 0;
+            }
+            long rank = Math.max(1, (long) Math.ceil(count * percentile / 100.0));
+            long seen = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                seen += this.buckets.get(i);
+                if (seen >= rank) {
+                    return Math.min(upperBoundOf(i), this.max.get()) / 1000.0;
+                }
+            }
+            return this.max.get() / 1000.0;
+        }
+
+        public JSONObject toJSON() throws JSONException {
+            long count = this.count.get();
+            JSONObject histogram = new JSONObject();
+            histogram.put("count", count);
+            histogram.put("meanMs", count > 0 ? this.sum.get() / 1000.0 / count : 0);
+            histogram.put("p50Ms", this.getPercentileMs(50));
+            histogram.put("p95Ms", this.getPercentileMs(95));
+            histogram.put("p99Ms", this.getPercentileMs(99));
+            histogram.put("maxMs", this.max.get() / 1000.0);
+            return histogram;
+        }
+
+        static int bucketOf(long micros) {
+            int exponent = 63 - Long.numberOfLeadingZeros(micros);
+            if (exponent < 2) {
+                return (int) micros - 1;
+            }
+            int subBucket = (int) ((micros >>> (exponent - 2)) & (SUB_BUCKETS - 1));
+            return Math.min(BUCKETS - 1, (exponent - 1) * SUB_BUCKETS + subBucket - SUB_BUCKETS + 3);
+        }
+
+        static long upperBoundOf(int bucket) {
+            if (bucket < 3) {
+                return bucket + 1;
+            }
+            int exponent = (bucket - 3) / SUB_BUCKETS + 2;
+            int subBucket = (bucket - 3) % SUB_BUCKETS;
+            return ((long) (SUB_BUCKETS + subBucket + 1) << (exponent - 2)) - 1;
+        }
+    }
+
+    private static class PrinterMetrics {
+        private final Histogram[] stages = new Histogram[Stage.values().length];
+        private final AtomicLong jobs = new AtomicLong();
+        private final AtomicLong bytes = new AtomicLong();
+        private final AtomicLong reconnects = new AtomicLong();
+        private final AtomicLong failures = new AtomicLong();
+        private final ConcurrentHashMap<String, AtomicLong> failuresByStage = new ConcurrentHashMap<>();
+
+        private PrinterMetrics() {
+            for (int i = 0; i < this.stages.length; i++) {
+                this.stages[i] = new Histogram();
+            }
+        }
+
+        private JSONObject toJSON() throws JSONException {
+            JSONObject stages = new JSONObject();
+            for (Stage stage : Stage.values()) {
+                Histogram histogram = this.stages[stage.ordinal()];
+                if (histogram.getCount() > 0) {
+                    stages.put(stage.getName(), histogram.toJSON());
+                }
+            }
+            JSONObject failuresByStage = new JSONObject();
+            for (Map.Entry<String, AtomicLong> failure : this.failuresByStage.entrySet()) {
+                failuresByStage.put(failure.getKey(), failure.getValue().get());
+            }
+            JSONObject printer = new JSONObject();
+            printer.put("jobs", this.jobs.get());
+            printer.put("bytes", this.bytes.get());
+            printer.put("reconnects", this.reconnects.get());
+            printer.put("failures", this.failures.get());
+            printer.put("failuresByStage", failuresByStage);
+            printer.put("stages", stages);
+            return printer;
+        }
+    }
+
+    private final ConcurrentHashMap<String, PrinterMetrics> printers = new ConcurrentHashMap<>();
+    private volatile long since = System.currentTimeMillis();
+
+    public void record(String printerKey, Stage stage, long startedAtNanos) {
+        this.recordDuration(printerKey, stage, System.nanoTime() - startedAtNanos);
+    }
+
+    public void recordDuration(String printerKey, Stage stage, long durationNanos) {
+        this.get(printerKey).stages[stage.ordinal()].record(durationNanos / 1000);
+    }
+
+    public void addJob(String printerKey) {
+        this.get(printerKey).jobs.incrementAndGet();
+    }
+
+    public void addBytes(String printerKey, long bytes) {
+        this.get(printerKey).bytes.addAndGet(bytes);
+    }
+
+    public void addReconnect(String printerKey) {
+        this.get(printerKey).reconnects.incrementAndGet();
+    }
+
+    public void addFailure(String printerKey, Stage stage) {
+        PrinterMetrics printerMetrics = this.get(printerKey);
+        printerMetrics.failures.incrementAndGet();
+        printerMetrics.failuresByStage.computeIfAbsent(stage.getName(), name -> new AtomicLong()).incrementAndGet();
+    }
+
+    public void reset() {
+        this.printers.clear();
+        this.since = System.currentTimeMillis();
+    }
+
+    public JSONObject toJSON() throws JSONException {
+        JSONObject printers = new JSONObject();
+        for (Map.Entry<String, PrinterMetrics> printer : this.printers.entrySet()) {
+            printers.put(printer.getKey(), printer.getValue().toJSON());
+        }
+        JSONObject metrics = new JSONObject();
+        metrics.put("since", this.since);
+        metrics.put("now", System.currentTimeMillis());
+        metrics.put("printers", printers);
+        return metrics;
+    }
+
+    private PrinterMetrics get(String printerKey) {
+        return this.printers.computeIfAbsent(printerKey, key -> new PrinterMetrics());
+    }
+}
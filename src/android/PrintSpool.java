@@ -0,0 +1,568 @@
+package de.paystory.thermal_printer;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
+import java.io.OutputStreamWriter;
+import java.io.RandomAccessFile;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Durable spool of print jobs. Every change is appended to a log file, the log is synced to disk
+ * in batches and compacted when most of its records are obsolete. Pending jobs are replayed after a
+ * restart and retried per printer with exponential backoff until they are printed or cancelled.
+ * Only connection errors are retried, a job that fails for any other reason is marked failed.
+ */
+public class PrintSpool {
+    private static final String LOG_FILE = "spool.log";
+    private static final long SYNC_WINDOW_MS = 20;
+    private static final int MAX_COMPLETED_IDS = 500;
+    private static final int COMPACT_MIN_RECORDS = 200;
+
+    public interface JobExecutor {
+        void execute(Job job, Completion completion);
+    }
+
+    public interface Completion {
+        /**
+         * @param error null if the job was printed
+         * @param retry whether the error is temporary, e.g. the printer is not connected
+         */
+        void onComplete(Exception error, boolean retry);
+    }
+
+    public static class Job {
+        private final String id;
+        private final String printerKey;
+        private final JSONObject data;
+        private final long createdAt;
+        private final int maxAttempts;
+        private int attempts;
+        private long nextAttemptAt;
+        private String lastError;
+
+        private Job(String id, String printerKey, JSONObject data, long createdAt, int maxAttempts) {
+            this.id = id;
+            this.printerKey = printerKey;
+            this.data = data;
+            this.createdAt = createdAt;
+            this.maxAttempts = maxAttempts;
+        }
+
+        public String getId() {
+            return this.id;
+        }
+
+        public String getPrinterKey() {
+            return this.printerKey;
+        }
+
+        public JSONObject getData() {
+            return this.data;
+        }
+
+        public JSONObject toJSON() throws JSONException {
+            JSONObject job = new JSONObject();
+            job.put("jobId", this.id);
+            job.put("printerKey", this.printerKey);
+            job.put("createdAt", this.createdAt);
+            job.put("attempts", this.attempts);
+            if (this.maxAttempts > 0) {
+                job.put("maxAttempts", this.maxAttempts);
+            }
+            if (this.nextAttemptAt > 0) {
+                job.put("nextAttemptAt", this.nextAttemptAt);
+            }
+            if (this.lastError != null) {
+                job.put("lastError", this.lastError);
+            }
+            return job;
+        }
+    }
+
+    private static class PrinterState {
+        private boolean inFlight;
+        private int failures;
+        private ScheduledFuture<?> retry;
+    }
+
+    private final File directory;
+    private final JobExecutor jobExecutor;
+    private final long initialBackoffMs;
+    private final long maxBackoffMs;
+    private final LinkedHashMap<String, Job> jobs = new LinkedHashMap<>();
+    private final LinkedHashMap<String, Long> completedIds = new LinkedHashMap<>();
+    private final HashMap<String, PrinterState> printers = new HashMap<>();
+    private final Object logLock = new Object();
+    private FileOutputStream logStream;
+    private Writer log;
+    private long appendedRecords = 0;
+    private long syncedRecords = 0;
+    private int logRecords = 0;
+    // records after failedAfter up to failedThrough may not be on disk, until the next compaction
+    private long failedAfter = -1;
+    private long failedThrough = 0;
+    private IOException logError;
+    private ScheduledExecutorService scheduler;
+
+    public PrintSpool(File directory, JobExecutor jobExecutor, long initialBackoffMs, long maxBackoffMs) {
+        this.directory = directory;
+        this.jobExecutor = jobExecutor;
+        this.initialBackoffMs = Math.max(100, initialBackoffMs);
+        this.maxBackoffMs = Math.max(this.initialBackoffMs, maxBackoffMs);
+    }
+
+    /**
+     * Replays the log, compacts it and starts printing the pending jobs.
+     */
+    public synchronized void open() throws IOException {
+        if (this.scheduler != null) {
+            return;
+        }
+        if (!this.directory.isDirectory() && !this.directory.mkdirs()) {
+            throw new IOException("Unable to create the spool directory " + this.directory);
+        }
+        this.replay();
+        this.compact();
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "ThermalPrinter-Spool");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.scheduler.scheduleWithFixedDelay(this::sync, SYNC_WINDOW_MS, SYNC_WINDOW_MS, TimeUnit.MILLISECONDS);
+        for (String printerKey : this.getPrinterKeys()) {
+            this.scheduler.execute(() -> this.drain(printerKey));
+        }
+    }
+
+    public void close() {
+        ScheduledExecutorService scheduler;
+        synchronized (this) {
+            scheduler = this.scheduler;
+            this.scheduler = null;
+        }
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+        this.sync();
+        synchronized (this.logLock) {
+            this.closeLog();
+        }
+    }
+
+    /**
+     * Adds a job and returns once it is synced to disk. Returns false if a job with the same ID is
+     * already spooled or was printed recently.
+     */
+    public boolean enqueue(String jobId, String printerKey, JSONObject data, int maxAttempts) throws IOException, JSONException {
+        Job job;
+        long record;
+        synchronized (this) {
+            if (this.jobs.containsKey(jobId) || this.completedIds.containsKey(jobId)) {
+                return false;
+            }
+            job = new Job(jobId, printerKey, data, System.currentTimeMillis(), maxAttempts);
+            record = this.append(this.addRecord(job));
+            this.jobs.put(jobId, job);
+        }
+        try {
+            this.awaitSync(record);
+        } catch (IOException e) {
+            // the add record may still be on disk, so it's cancelled to not print the job after a restart
+            synchronized (this) {
+                if (this.jobs.get(jobId) == job) {
+                    this.jobs.remove(jobId);
+                    this.append(this.record("cancel", jobId));
+                }
+            }
+            throw e;
+        }
+        ScheduledExecutorService scheduler = this.scheduler;
+        if (scheduler != null) {
+            scheduler.execute(() -> this.drain(printerKey));
+        }
+        return true;
+    }
+
+    public boolean cancel(String jobId) throws IOException, JSONException {
+        long record;
+        synchronized (this) {
+            if (this.jobs.remove(jobId) == null) {
+                return false;
+            }
+            record = this.append(this.record("cancel", jobId));
+        }
+        this.awaitSync(record);
+        return true;
+    }
+
+    public synchronized Job getJob(String jobId) {
+        return this.jobs.get(jobId);
+    }
+
+    public synchronized JSONArray list(String printerKey) throws JSONException {
+        JSONArray jobs = new JSONArray();
+        for (Job job : this.jobs.values()) {
+            if (printerKey == null || job.printerKey.equals(printerKey)) {
+                jobs.put(job.toJSON());
+            }
+        }
+        return jobs;
+    }
+
+    /**
+     * Skips the backoff of the printer, e.g. because it was found again.
+     */
+    public void retryNow(String printerKey) {
+        synchronized (this) {
+            PrinterState state = this.printers.get(printerKey);
+            if (state != null && state.retry != null) {
+                state.retry.cancel(false);
+                state.retry = null;
+            }
+        }
+        this.drain(printerKey);
+    }
+
+    public void retryAll() {
+        for (String printerKey : this.getPrinterKeys()) {
+            this.retryNow(printerKey);
+        }
+    }
+
+    private void drain(String printerKey) {
+        Job next = null;
+        synchronized (this) {
+            PrinterState state = this.printers.get(printerKey);
+            if (state == null) {
+                state = new PrinterState();
+                this.printers.put(printerKey, state);
+            }
+            if (state.inFlight || state.retry != null) {
+                return;
+            }
+            for (Job job : this.jobs.values()) {
+                if (job.printerKey.equals(printerKey)) {
+                    next = job;
+                    break;
+                }
+            }
+            if (next == null) {
+                this.printers.remove(printerKey);
+                return;
+            }
+            state.inFlight = true;
+        }
+        Job job = next;
+        this.jobExecutor.execute(job, (error, retry) -> this.onJobComplete(job, error, retry));
+    }
+
+    private void onJobComplete(Job job, Exception error, boolean retry) {
+        synchronized (this) {
+            PrinterState state = this.printers.get(job.printerKey);
+            state.inFlight = false;
+            boolean spooled = this.jobs.get(job.id) == job;
+            try {
+                if (error == null) {
+                    state.failures = 0;
+                    if (spooled) {
+                        this.jobs.remove(job.id);
+                        this.rememberCompleted(job.id);
+                        this.append(this.record("done", job.id));
+                    }
+                } else {
+                    if (retry) {
+                        state.failures++;
+                    }
+                    if (spooled) {
+                        job.attempts++;
+                        job.lastError = error.getMessage();
+                        if (!retry || (job.maxAttempts > 0 && job.attempts >= job.maxAttempts)) {
+                            this.jobs.remove(job.id);
+                            this.append(this.record("failed", job.id).put("error", job.lastError));
+                        } else {
+                            long delay = this.getBackoff(state.failures);
+                            job.nextAttemptAt = System.currentTimeMillis() + delay;
+                            this.append(this.record("attempt", job.id).put("attempts", job.attempts).put("error", job.lastError));
+                            if (this.scheduler != null) {
+                                state.retry = this.scheduler.schedule(() -> {
+                                    synchronized (this) {
+                                        state.retry = null;
+                                    }
+                                    this.drain(job.printerKey);
+                                }, delay, TimeUnit.MILLISECONDS);
+                            }
+                            return;
+                        }
+                    }
+                }
+            } catch (JSONException ignored) {}
+            // a failed write is repaired by rewriting the log
+            if (this.hasLogError() || (this.logRecords > COMPACT_MIN_RECORDS && this.logRecords > 4 * (this.jobs.size() + this.completedIds.size()))) {
+                try {
+                    this.compact();
+                } catch (IOException ignored) {}
+            }
+        }
+        this.drain(job.printerKey);
+    }
+
+    private long getBackoff(int failures) {
+        long backoff = this.initialBackoffMs << Math.min(failures - 1, 20);
+        backoff = Math.min(backoff, this.maxBackoffMs);
+        // +-20% jitter, so many terminals don't retry a printer at the same time
+        return backoff + (long) (backoff * (ThreadLocalRandom.current().nextDouble() * 0.4 - 0.2));
+    }
+
+    private synchronized ArrayList<String> getPrinterKeys() {
+        ArrayList<String> printerKeys = new ArrayList<>();
+        for (Job job : this.jobs.values()) {
+            if (!printerKeys.contains(job.printerKey)) {
+                printerKeys.add(job.printerKey);
+            }
+        }
+        return printerKeys;
+    }
+
+    private void rememberCompleted(String jobId) {
+        this.completedIds.put(jobId, System.currentTimeMillis());
+        Iterator<String> iterator = this.completedIds.keySet().iterator();
+        while (this.completedIds.size() > MAX_COMPLETED_IDS && iterator.hasNext()) {
+            iterator.next();
+            iterator.remove();
+        }
+    }
+
+    private JSONObject record(String operation, String jobId) throws JSONException {
+        JSONObject record = new JSONObject();
+        record.put("op", operation);
+        record.put("jobId", jobId);
+        return record;
+    }
+
+    private JSONObject addRecord(Job job) throws JSONException {
+        JSONObject record = this.record("add", job.id);
+        record.put("printerKey", job.printerKey);
+        record.put("data", job.data);
+        record.put("createdAt", job.createdAt);
+        record.put("maxAttempts", job.maxAttempts);
+        record.put("attempts", job.attempts);
+        return record;
+    }
+
+    /**
+     * Appends a record to the log without syncing it, returns its sequence number for awaitSync.
+     * A failed write is reported by awaitSync, the job stays in memory and is printed anyway.
+     */
+    private long append(JSONObject record) {
+        synchronized (this.logLock) {
+            long sequence = ++this.appendedRecords;
+            this.logRecords++;
+            try {
+                if (this.log == null) {
+                    File file = new File(this.directory, LOG_FILE);
+                    boolean terminate = !this.endsWithNewline(file);
+                    this.logStream = new FileOutputStream(file, true);
+                    this.log = new BufferedWriter(new OutputStreamWriter(this.logStream, StandardCharsets.UTF_8));
+                    if (terminate) {
+                        // ends a record cut off by a failed write or a crash, replay skips it
+                        this.log.write('\n');
+                    }
+                }
+                this.log.write(record.toString());
+                this.log.write('\n');
+            } catch (IOException e) {
+                this.onLogError(e);
+            }
+            return sequence;
+        }
+    }
+
+    /**
+     * Waits until the scheduler synced the record, so one fsync covers all records appended during
+     * the sync window. Throws if the record could not be written or synced within a second.
+     */
+    private void awaitSync(long record) throws IOException {
+        if (this.scheduler == null) {
+            this.sync();
+        }
+        synchronized (this.logLock) {
+            long deadline = System.currentTimeMillis() + 1000;
+            while (this.syncedRecords < record && !this.isFailed(record) && System.currentTimeMillis() < deadline) {
+                try {
+                    this.logLock.wait(SYNC_WINDOW_MS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("Interrupted while syncing the spool log");
+                }
+            }
+            if (this.isFailed(record)) {
+                throw new IOException("Unable to write the spool log: " + this.logError.getMessage(), this.logError);
+            }
+            if (this.syncedRecords < record) {
+                throw new IOException("Timed out syncing the spool log");
+            }
+        }
+    }
+
+    private boolean endsWithNewline(File file) throws IOException {
+        if (!file.isFile() || file.length() == 0) {
+            return true;
+        }
+        try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r")) {
+            randomAccessFile.seek(randomAccessFile.length() - 1);
+            return randomAccessFile.read() == '\n';
+        }
+    }
+
+    private boolean hasLogError() {
+        synchronized (this.logLock) {
+            return this.failedAfter >= 0;
+        }
+    }
+
+    private boolean isFailed(long record) {
+        return this.failedAfter >= 0 && record > this.failedAfter && record <= this.failedThrough;
+    }
+
+    /**
+     * Marks all records that are not synced yet as failed and closes the log, so the next append
+     * reopens it.
+     */
+    private void onLogError(IOException error) {
+        if (this.failedAfter < 0) {
+            this.failedAfter = this.syncedRecords;
+        }
+        this.failedThrough = this.appendedRecords;
+        this.logError = error;
+        this.closeLog();
+        this.logLock.notifyAll();
+    }
+
+    private void sync() {
+        synchronized (this.logLock) {
+            if (this.syncedRecords == this.appendedRecords) {
+                return;
+            }
+            try {
+                if (this.log != null) {
+                    this.log.flush();
+                    this.logStream.getFD().sync();
+                }
+                this.syncedRecords = this.appendedRecords;
+            } catch (IOException e) {
+                this.onLogError(e);
+            }
+            this.logLock.notifyAll();
+        }
+    }
+
+    private void closeLog() {
+        if (this.log != null) {
+            try {
+                this.log.close();
+            } catch (IOException ignored) {}
+            this.log = null;
+            this.logStream = null;
+        }
+    }
+
+    private void replay() throws IOException {
+        File file = new File(this.directory, LOG_FILE);
+        if (!file.isFile()) {
+            return;
+        }
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                try {
+                    this.apply(new JSONObject(line));
+                } catch (JSONException ignored) {
+                    // incomplete record of an interrupted write
+                }
+            }
+        }
+    }
+
+    private void apply(JSONObject record) throws JSONException {
+        String jobId = record.getString("jobId");
+        switch (record.getString("op")) {
+            case "add":
+                Job job = new Job(jobId, record.getString("printerKey"), record.getJSONObject("data"), record.getLong("createdAt"), record.optInt("maxAttempts", 0));
+                job.attempts = record.optInt("attempts", 0);
+                this.jobs.put(jobId, job);
+                break;
+            case "attempt":
+                Job attempted = this.jobs.get(jobId);
+                if (attempted != null) {
+                    attempted.attempts = record.getInt("attempts");
+                    attempted.lastError = record.optString("error", null);
+                }
+                break;
+            case "done":
+                this.jobs.remove(jobId);
+                this.rememberCompleted(jobId);
+                break;
+            default:
+                this.jobs.remove(jobId);
+                break;
+        }
+    }
+
+    /**
+     * Rewrites the log with only the pending jobs and the recently completed IDs.
+     */
+    private void compact() throws IOException {
+        synchronized (this.logLock) {
+            File temporaryFile = new File(this.directory, LOG_FILE + ".tmp");
+            int records = 0;
+            try (FileOutputStream outputStream = new FileOutputStream(temporaryFile)) {
+                Writer writer = new BufferedWriter(new OutputStreamWriter(outputStream, StandardCharsets.UTF_8));
+                for (String completedId : this.completedIds.keySet()) {
+                    writer.write(this.record("done", completedId).toString());
+                    writer.write('\n');
+                    records++;
+                }
+                for (Job job : this.jobs.values()) {
+                    JSONObject record = this.addRecord(job);
+                    writer.write(record.toString());
+                    writer.write('\n');
+                    records++;
+                }
+                writer.flush();
+                outputStream.getFD().sync();
+            } catch (JSONException e) {
+                temporaryFile.delete();
+                throw new IOException(e.getMessage());
+            }
+            this.closeLog();
+            if (!temporaryFile.renameTo(new File(this.directory, LOG_FILE))) {
+                temporaryFile.delete();
+                throw new IOException("Unable to compact the spool log");
+            }
+            this.logRecords = records;
+            this.syncedRecords = this.appendedRecords;
+            this.failedAfter = -1;
+            this.logLock.notifyAll();
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package de.paystory.thermal_printer;
+
+import com.dantsu.escposprinter.EscPosCharsetEncoding;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Keeps the printer profiles registered with configurePrinter and the parsed charset encodings.
+ * EscPosPrinter instances are not cached: EscPosPrinterCommands skips style commands matching the
+ * style it sent last, although every print starts with a printer reset (ESC @), so a reused
+ * printer loses the formatting of the following receipts.
+ */
+public class PrinterCache {
+    private final ConcurrentHashMap<String, EscPosCharsetEncoding> charsetEncodings = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, JSONObject> profiles = new ConcurrentHashMap<>();
+
+    /**
+     * Returns the charset encoding of the printer settings, or null for the default encoding of
+     * the library. Encodings are immutable, so one instance is shared by all printers.
+     */
+    public EscPosCharsetEncoding getCharsetEncoding(JSONObject charsetEncodingData) {
+        if (charsetEncodingData == null) {
+            return null;
+        }
+        String charsetName = charsetEncodingData.optString("charsetName", "windows-1252");
+        int charsetId = charsetEncodingData.optInt("charsetId", 16);
+        return this.charsetEncodings.computeIfAbsent(charsetName + "|" + charsetId, key -> new EscPosCharsetEncoding(charsetName, charsetId));
+    }
+
+    public void configure(String printerId, JSONObject profile) throws JSONException {
+        this.profiles.put(printerId, new JSONObject(profile.toString()));
+    }
+
+    public ArrayList<JSONObject> getProfiles() throws JSONException {
+        ArrayList<JSONObject> profiles = new ArrayList<>();
+        for (JSONObject profile : this.profiles.values()) {
+            profiles.add(new JSONObject(profile.toString()));
+        }
+        return profiles;
+    }
+
+    public JSONObject resolve(JSONObject data) throws JSONException {
+        if (data == null || !data.has("printerId")) {
+            return data;
+        }
+        String printerId = data.getString("printerId");
+        JSONObject profile = this.profiles.get(printerId);
+        if (profile == null) {
+            throw new JSONException("Printer " + printerId + " is not configured!");
+        }
+        JSONObject resolved = new JSONObject(profile.toString());
+        Iterator<String> keys = data.keys();
+        while (keys.hasNext()) {
+            String key = keys.next();
+            resolved.put(key, data.get(key));
+        }
+        return resolved;
+    }
+}
@@ -0,0 +1,493 @@
+package de.paystory.thermal_printer;
+
+import android.bluetooth.BluetoothAdapter;
+import android.bluetooth.BluetoothClass;
+import android.bluetooth.BluetoothDevice;
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.hardware.usb.UsbDevice;
+import android.hardware.usb.UsbManager;
+
+import com.dantsu.escposprinter.connection.DeviceConnection;
+import com.dantsu.escposprinter.connection.bluetooth.BluetoothConnection;
+import com.dantsu.escposprinter.connection.bluetooth.BluetoothConnections;
+import com.dantsu.escposprinter.connection.usb.UsbConnection;
+import com.dantsu.escposprinter.connection.usb.UsbConnections;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.net.Inet4Address;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.InterfaceAddress;
+import java.net.NetworkInterface;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Registry of known printers. It is filled in the background from the paired Bluetooth devices,
+ * Bluetooth discovery, USB detach broadcasts, a periodic USB rescan and TCP subnet scans, and
+ * indexed by address, name and ID, so looking up a printer doesn't enumerate the devices again.
+ * USB attach is polled because Android delivers ACTION_USB_DEVICE_ATTACHED only to activities with
+ * a manifest intent filter, never to receivers registered at runtime.
+ */
+public class PrinterRegistry {
+    public static final String EVENT_FOUND = "found";
+    public static final String EVENT_LOST = "lost";
+    private static final int MAX_SCAN_HOSTS = 1024;
+
+    public interface Listener {
+        void onPrinterChanged(String event, String type, JSONObject printer);
+    }
+
+    public interface ConnectedFilter {
+        boolean isConnected(String type, String id);
+    }
+
+    private static class Entry {
+        private final String type;
+        private final DeviceConnection connection;
+        private final JSONObject printer;
+        private final List<String> ids;
+        private final boolean discovered;
+
+        private Entry(String type, DeviceConnection connection, JSONObject printer, List<String> ids, boolean discovered) {
+            this.type = type;
+            this.connection = connection;
+            this.printer = printer;
+            this.ids = ids;
+            this.discovered = discovered;
+        }
+    }
+
+    private final Context context;
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>();
+    private final HashMap<String, Entry> index = new HashMap<>();
+    private final Set<String> loadedTypes = Collections.newSetFromMap(new ConcurrentHashMap<>());
+    private final ConcurrentHashMap<String, Listener> listeners = new ConcurrentHashMap<>();
+    private volatile ConnectedFilter connectedFilter;
+    private volatile boolean active = true;
+    private BroadcastReceiver receiver;
+    private ScheduledExecutorService usbPoll;
+
+    public PrinterRegistry(Context context) {
+        this.context = context;
+    }
+
+    /**
+     * Hosts for which the filter returns true are kept by TCP scans even if they don't answer the
+     * probe, because printers accepting one connection at a time refuse it while the pool holds
+     * their socket.
+     */
+    public void setConnectedFilter(ConnectedFilter connectedFilter) {
+        this.connectedFilter = connectedFilter;
+    }
+
+    /**
+     * Pauses the USB rescans while the app is in the background.
+     */
+    public void setActive(boolean active) {
+        this.active = active;
+    }
+
+    public synchronized void start(long usbPollIntervalMs) {
+        if (this.receiver != null) {
+            return;
+        }
+        this.receiver = new BroadcastReceiver() {
+            @Override
+            public void onReceive(Context context, Intent intent) {
+                PrinterRegistry.this.onBroadcast(intent);
+            }
+        };
+        IntentFilter filter = new IntentFilter();
+        filter.addAction(BluetoothDevice.ACTION_FOUND);
+        filter.addAction(BluetoothDevice.ACTION_BOND_STATE_CHANGED);
+        filter.addAction(UsbManager.ACTION_USB_DEVICE_DETACHED);
+        this.context.registerReceiver(this.receiver, filter);
+        if (usbPollIntervalMs > 0) {
+            this.usbPoll = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "thermal-printer-usb-poll");
+                thread.setDaemon(true);
+                return thread;
+            });
+            this.usbPoll.scheduleWithFixedDelay(() -> {
+                if (this.active && this.loadedTypes.contains("usb")) {
+                    this.refreshUsb();
+                }
+            }, usbPollIntervalMs, usbPollIntervalMs, TimeUnit.MILLISECONDS);
+        }
+
+        Thread loader = new Thread(() -> {
+            this.refresh("usb");
+            this.refresh("bluetooth");
+        }, "thermal-printer-registry");
+        loader.setDaemon(true);
+        loader.start();
+    }
+
+    public synchronized void stop() {
+        if (this.receiver != null) {
+            try {
+                this.context.unregisterReceiver(this.receiver);
+            } catch (Exception ignored) {}
+            this.receiver = null;
+        }
+        if (this.usbPoll != null) {
+            this.usbPoll.shutdownNow();
+            this.usbPoll = null;
+        }
+        this.listeners.clear();
+    }
+
+    /**
+     * Registers a listener and reports every printer that is already known to it as found.
+     */
+    public void addListener(String id, Listener listener) {
+        ArrayList<Entry> known;
+        synchronized (this) {
+            this.listeners.put(id, listener);
+            known = new ArrayList<>(this.entries.values());
+        }
+        for (Entry entry : known) {
+            listener.onPrinterChanged(EVENT_FOUND, entry.type, this.withIds(entry));
+        }
+    }
+
+    public boolean removeListener(String id) {
+        return this.listeners.remove(id) != null;
+    }
+
+    /**
+     * Returns the connection of the printer with the given address, name or ID. An unknown ID
+     * triggers one refresh of the device list before giving up.
+     */
+    public DeviceConnection find(String type, String id) {
+        this.ensureLoaded(type);
+        synchronized (this) {
+            Entry entry = this.index.get(type + "-" + id);
+            if (entry != null) {
+                return entry.connection;
+            }
+        }
+        this.refresh(type);
+        synchronized (this) {
+            Entry entry = this.index.get(type + "-" + id);
+            return entry != null ? entry.connection : null;
+        }
+    }
+
+    public JSONArray list(String type) {
+        this.ensureLoaded(type);
+        JSONArray printers = new JSONArray();
+        synchronized (this) {
+            for (Entry entry : this.entries.values()) {
+                if (entry.type.equals(type)) {
+                    printers.put(entry.printer);
+                }
+            }
+        }
+        return printers;
+    }
+
+    public void refresh(String type) {
+        if (type.equals("bluetooth")) {
+            this.refreshBluetooth();
+        } else if (type.equals("usb")) {
+            this.refreshUsb();
+        }
+    }
+
+    public boolean startBluetoothDiscovery() {
+        BluetoothAdapter bluetoothAdapter = BluetoothAdapter.getDefaultAdapter();
+        if (bluetoothAdapter == null || !bluetoothAdapter.isEnabled()) {
+            return false;
+        }
+        try {
+            if (bluetoothAdapter.isDiscovering()) {
+                return true;
+            }
+            return bluetoothAdapter.startDiscovery();
+        } catch (SecurityException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Probes every host of the subnet (CIDR notation, e.g. "192.168.1.0/24") on the given port with
+     * at most `parallelism` connection attempts at once. Without a subnet the /24 network of the
+     * first site-local IPv4 address of the device is scanned.
+     */
+    public JSONArray scanTcp(String subnet, int port, int timeout, int parallelism) throws Exception {
+        List<String> hosts = getSubnetHosts(subnet != null && !subnet.isEmpty() ? subnet : getLocalSubnet());
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, Math.min(parallelism, hosts.size())));
+        try {
+            ArrayList<Callable<Boolean>> probes = new ArrayList<>();
+            for (String host : hosts) {
+                probes.add(() -> {
+                    try (Socket socket = new Socket()) {
+                        socket.connect(new InetSocketAddress(host, port), timeout);
+                        return true;
+                    } catch (Exception e) {
+                        return false;
+                    }
+                });
+            }
+            List<Future<Boolean>> results = executor.invokeAll(probes);
+
+            ConnectedFilter connectedFilter = this.connectedFilter;
+            JSONArray printers = new JSONArray();
+            Set<String> reachable = new HashSet<>();
+            for (int i = 0; i < hosts.size(); i++) {
+                if (!results.get(i).get() && (connectedFilter == null || !connectedFilter.isConnected("tcp", hosts.get(i) + ":" + port))) {
+                    continue;
+                }
+                JSONObject printer = new JSONObject();
+                printer.put("address", hosts.get(i));
+                printer.put("port", port);
+                printers.put(printer);
+                reachable.add(hosts.get(i) + ":" + port);
+                this.put(new Entry("tcp", null, printer, Collections.singletonList(hosts.get(i) + ":" + port), true));
+            }
+            Set<String> scanned = new HashSet<>();
+            for (String host : hosts) {
+                scanned.add(host + ":" + port);
+            }
+            this.removeIf(entry -> entry.type.equals("tcp") && scanned.contains(entry.ids.get(0)) && !reachable.contains(entry.ids.get(0)));
+            return printers;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    public static List<String> getSubnetHosts(String subnet) throws Exception {
+        String[] parts = subnet.split("/");
+        InetAddress address = InetAddress.getByName(parts[0]);
+        if (!(address instanceof Inet4Address)) {
+            throw new IllegalArgumentException("Only IPv4 subnets can be scanned!");
+        }
+        int prefixLength = parts.length > 1 ? Integer.parseInt(parts[1]) : 24;
+        if (prefixLength < 22 || prefixLength > 30) {
+            throw new IllegalArgumentException("The subnet must have a prefix length between 22 and 30!");
+        }
+        byte[] bytes = address.getAddress();
+        int ip = ((bytes[0] & 0xFF) << 24) | ((bytes[1] & 0xFF) << 16) | ((bytes[2] & 0xFF) << 8) | (bytes[3] & 0xFF);
+        int mask = -1 << (32 - prefixLength);
+        int network = ip & mask;
+        int hostCount = Math.min(MAX_SCAN_HOSTS, (1 << (32 - prefixLength)) - 2);
+        ArrayList<String> hosts = new ArrayList<>(hostCount);
+        for (int i = 1; i <= hostCount; i++) {
+            int host = network + i;
+            hosts.add(((host >>> 24) & 0xFF) + "." + ((host >>> 16) & 0xFF) + "." + ((host >>> 8) & 0xFF) + "." + (host & 0xFF));
+        }
+        return hosts;
+    }
+
+    private static String getLocalSubnet() throws Exception {
+        for (NetworkInterface networkInterface : Collections.list(NetworkInterface.getNetworkInterfaces())) {
+            if (!networkInterface.isUp() || networkInterface.isLoopback()) {
+                continue;
+            }
+            for (InterfaceAddress interfaceAddress : networkInterface.getInterfaceAddresses()) {
+                InetAddress address = interfaceAddress.getAddress();
+                if (address instanceof Inet4Address && address.isSiteLocalAddress()) {
+                    return address.getHostAddress() + "/" + Math.max(24, (int) interfaceAddress.getNetworkPrefixLength());
+                }
+            }
+        }
+        throw new IllegalStateException("No local network found!");
+    }
+
+    private void ensureLoaded(String type) {
+        if (!this.loadedTypes.contains(type)) {
+            this.refresh(type);
+        }
+    }
+
+    private void refreshBluetooth() {
+        BluetoothAdapter bluetoothAdapter = BluetoothAdapter.getDefaultAdapter();
+        if (bluetoothAdapter == null || !bluetoothAdapter.isEnabled()) {
+            return;
+        }
+        BluetoothConnection[] bluetoothConnections;
+        try {
+            bluetoothConnections = new BluetoothConnections().getList();
+        } catch (Exception e) {
+            return;
+        }
+        Set<String> paired = new HashSet<>();
+        if (bluetoothConnections != null) {
+            for (BluetoothConnection bluetoothConnection : bluetoothConnections) {
+                Entry entry = this.createBluetoothEntry(bluetoothConnection, false);
+                paired.add(entry.ids.get(0));
+                this.put(entry);
+            }
+        }
+        this.removeIf(entry -> entry.type.equals("bluetooth") && !entry.discovered && !paired.contains(entry.ids.get(0)));
+        this.loadedTypes.add("bluetooth");
+    }
+
+    private void refreshUsb() {
+        UsbConnection[] usbConnections;
+        try {
+            usbConnections = new UsbConnections(this.context).getList();
+        } catch (Exception e) {
+            return;
+        }
+        Set<String> attached = new HashSet<>();
+        if (usbConnections != null) {
+            for (UsbConnection usbConnection : usbConnections) {
+                Entry entry = this.createUsbEntry(usbConnection);
+                attached.add(entry.ids.get(0));
+                this.put(entry);
+            }
+        }
+        this.removeIf(entry -> entry.type.equals("usb") && !attached.contains(entry.ids.get(0)));
+        this.loadedTypes.add("usb");
+    }
+
+    private void onBroadcast(Intent intent) {
+        String action = intent.getAction();
+        if (action == null) {
+            return;
+        }
+        if (action.equals(BluetoothDevice.ACTION_FOUND)) {
+            BluetoothDevice bluetoothDevice = intent.getParcelableExtra(BluetoothDevice.EXTRA_DEVICE);
+            if (bluetoothDevice != null && isPrinter(bluetoothDevice)) {
+                this.put(this.createBluetoothEntry(new BluetoothConnection(bluetoothDevice), true));
+            }
+        } else if (action.equals(BluetoothDevice.ACTION_BOND_STATE_CHANGED)) {
+            new Thread(this::refreshBluetooth).start();
+        } else if (action.equals(UsbManager.ACTION_USB_DEVICE_DETACHED)) {
+            new Thread(this::refreshUsb).start();
+        }
+    }
+
+    private static boolean isPrinter(BluetoothDevice bluetoothDevice) {
+        try {
+            return bluetoothDevice.getBluetoothClass().getMajorDeviceClass() == BluetoothClass.Device.Major.IMAGING;
+        } catch (Exception e) {
+            return false;
+        }
+    }
+
+    private Entry createBluetoothEntry(BluetoothConnection bluetoothConnection, boolean discovered) {
+        BluetoothDevice bluetoothDevice = bluetoothConnection.getDevice();
+        JSONObject printerObj = new JSONObject();
+        try { printerObj.put("address", bluetoothDevice.getAddress()); } catch (Exception ignored) {}
+        try { printerObj.put("bondState", bluetoothDevice.getBondState()); } catch (Exception ignored) {}
+        try { printerObj.put("name", bluetoothDevice.getName()); } catch (Exception ignored) {}
+        try { printerObj.put("type", bluetoothDevice.getType()); } catch (Exception ignored) {}
+        try { printerObj.put("features", bluetoothDevice.getUuids()); } catch (Exception ignored) {}
+        try { printerObj.put("deviceClass", bluetoothDevice.getBluetoothClass().getDeviceClass()); } catch (Exception ignored) {}
+        try { printerObj.put("majorDeviceClass", bluetoothDevice.getBluetoothClass().getMajorDeviceClass()); } catch (Exception ignored) {}
+        ArrayList<String> ids = new ArrayList<>();
+        ids.add(bluetoothDevice.getAddress());
+        try { if (bluetoothDevice.getName() != null) { ids.add(bluetoothDevice.getName()); } } catch (Exception ignored) {}
+        return new Entry("bluetooth", bluetoothConnection, printerObj, ids, discovered);
+    }
+
+    private Entry createUsbEntry(UsbConnection usbConnection) {
+        UsbDevice usbDevice = usbConnection.getDevice();
+        JSONObject printerObj = new JSONObject();
+        try { printerObj.put("productName", Objects.requireNonNull(usbDevice.getProductName()).trim()); } catch (Exception ignored) {}
+        try { printerObj.put("manufacturerName", usbDevice.getManufacturerName()); } catch (Exception ignored) {}
+        try { printerObj.put("deviceId", usbDevice.getDeviceId()); } catch (Exception ignored) {}
+        try { printerObj.put("serialNumber", usbDevice.getSerialNumber()); } catch (Exception ignored) {}
+        try { printerObj.put("vendorId", usbDevice.getVendorId()); } catch (Exception ignored) {}
+        ArrayList<String> ids = new ArrayList<>();
+        ids.add(String.valueOf(usbDevice.getDeviceId()));
+        try { ids.add(Objects.requireNonNull(usbDevice.getProductName()).trim()); } catch (Exception ignored) {}
+        return new Entry("usb", usbConnection, printerObj, ids, false);
+    }
+
+    private void put(Entry entry) {
+        String key = entry.type + "-" + entry.ids.get(0);
+        boolean found;
+        synchronized (this) {
+            Entry previous = this.entries.get(key);
+            if (previous != null && previous.connection != null && entry.connection != null) {
+                // keep the connection instance that may already be open
+                entry = new Entry(entry.type, previous.connection, entry.printer, entry.ids, entry.discovered && previous.discovered);
+            }
+            found = previous == null;
+            if (previous != null) {
+                this.unindex(previous);
+            }
+            this.entries.put(key, entry);
+            for (String id : entry.ids) {
+                this.index.put(entry.type + "-" + id, entry);
+            }
+        }
+        if (found) {
+            this.notifyListeners(EVENT_FOUND, entry);
+        }
+    }
+
+    private interface EntryFilter {
+        boolean matches(Entry entry);
+    }
+
+    private void removeIf(EntryFilter filter) {
+        ArrayList<Entry> removed = new ArrayList<>();
+        synchronized (this) {
+            Iterator<Map.Entry<String, Entry>> iterator = this.entries.entrySet().iterator();
+            while (iterator.hasNext()) {
+                Entry entry = iterator.next().getValue();
+                if (filter.matches(entry)) {
+                    iterator.remove();
+                    this.unindex(entry);
+                    removed.add(entry);
+                }
+            }
+        }
+        for (Entry entry : removed) {
+            this.notifyListeners(EVENT_LOST, entry);
+        }
+    }
+
+    private void unindex(Entry entry) {
+        for (String id : entry.ids) {
+            this.index.remove(entry.type + "-" + id, entry);
+        }
+    }
+
+    private JSONObject withIds(Entry entry) {
+        try {
+            JSONObject printer = new JSONObject(entry.printer.toString());
+            printer.put("ids", new JSONArray(entry.ids));
+            return printer;
+        } catch (Exception e) {
+            return entry.printer;
+        }
+    }
+
+    private void notifyListeners(String event, Entry entry) {
+        if (this.listeners.isEmpty()) {
+            return;
+        }
+        JSONObject printer = this.withIds(entry);
+        for (Listener listener : this.listeners.values()) {
+            listener.onPrinterChanged(event, entry.type, printer);
+        }
+    }
+}
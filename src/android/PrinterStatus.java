@@ -0,0 +1,120 @@
+package de.paystory.thermal_printer;
+
+import com.dantsu.escposprinter.exceptions.EscPosConnectionException;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * ESC/POS status requests. DLE EOT is a real-time command the printer answers immediately, even
+ * when it is offline. GS r is answered only after all data sent before it has been processed, so
+ * its answer tells that the receive buffer is empty again.
+ */
+public class PrinterStatus {
+    public static final byte[] PRINTER_STATUS = new byte[]{0x10, 0x04, 0x01};
+    public static final byte[] OFFLINE_STATUS = new byte[]{0x10, 0x04, 0x02};
+    public static final byte[] ERROR_STATUS = new byte[]{0x10, 0x04, 0x03};
+    public static final byte[] PAPER_STATUS = new byte[]{0x10, 0x04, 0x04};
+    public static final byte[] READY_STATUS = new byte[]{0x1D, 0x72, 0x01};
+
+    private static final int STATUS_TIMEOUT_MS = 500;
+
+    /**
+     * Queries all DLE EOT states of the printer.
+     */
+    public static JSONObject query(StatusConnection connection, int timeoutMs) throws EscPosConnectionException, JSONException {
+        int printer = valid(connection.requestStatus(PRINTER_STATUS, timeoutMs));
+        JSONObject status = new JSONObject();
+        status.put("responded", printer >= 0);
+        if (printer < 0) {
+            return status;
+        }
+        int offline = valid(connection.requestStatus(OFFLINE_STATUS, timeoutMs));
+        int error = valid(connection.requestStatus(ERROR_STATUS, timeoutMs));
+        int paper = valid(connection.requestStatus(PAPER_STATUS, timeoutMs));
+
+        status.put("online", (printer & 0x08) == 0);
+        if (offline >= 0) {
+            status.put("coverOpen", (offline & 0x04) != 0);
+            status.put("paperFeeding", (offline & 0x08) != 0);
+            status.put("error", (offline & 0x40) != 0);
+        }
+        if (error >= 0) {
+            status.put("mechanicalError", (error & 0x04) != 0);
+            status.put("cutterError", (error & 0x08) != 0);
+            status.put("unrecoverableError", (error & 0x20) != 0);
+            status.put("recoverableError", (error & 0x40) != 0);
+        }
+        if (paper >= 0) {
+            status.put("paperNearEnd", (paper & 0x0C) != 0);
+            status.put("paperOut", (paper & 0x60) != 0 || (offline >= 0 && (offline & 0x20) != 0));
+        } else if (offline >= 0) {
+            status.put("paperOut", (offline & 0x20) != 0);
+        }
+        status.put("bufferReady", connection.requestStatus(READY_STATUS, timeoutMs) >= 0);
+        return status;
+    }
+
+    /**
+     * Waits until the printer has processed all data sent so far. Returns false if the printer is
+     * fine but doesn't answer GS r, then the caller has to pace the data another way. If the
+     * printer reports a problem it is thrown as exception.
+     */
+    public static boolean waitUntilReady(StatusConnection connection, int timeoutMs) throws EscPosConnectionException {
+        if (connection.requestStatus(READY_STATUS, timeoutMs) >= 0) {
+            return true;
+        }
+        int offline = valid(connection.requestStatus(OFFLINE_STATUS, STATUS_TIMEOUT_MS));
+        if (offline >= 0) {
+            if ((offline & 0x04) != 0) {
+                throw new EscPosConnectionException("Printer cover is open.");
+            }
+            if ((offline & 0x20) != 0) {
+                throw new EscPosConnectionException("Printer is out of paper.");
+            }
+            if ((offline & 0x40) != 0) {
+                throw new EscPosConnectionException("Printer reports an error.");
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Reads one byte of the answer, waiting at most timeoutMs. Answers to earlier requests which
+     * arrived too late have to be skipped before sending the request.
+     */
+    public static int read(InputStream inputStream, int timeoutMs) throws IOException {
+        long deadline = System.currentTimeMillis() + timeoutMs;
+        while (inputStream.available() <= 0) {
+            if (System.currentTimeMillis() >= deadline) {
+                return -1;
+            }
+            try {
+                Thread.sleep(2);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return -1;
+            }
+        }
+        return inputStream.read();
+    }
+
+    public static void skipAvailable(InputStream inputStream) throws IOException {
+        int available;
+        while ((available = inputStream.available()) > 0) {
+            if (inputStream.skip(available) <= 0) {
+                inputStream.read();
+            }
+        }
+    }
+
+    /**
+     * DLE EOT answers always have bit 1 and 4 set and bit 0 and 7 cleared.
+     */
+    private static int valid(int status) {
+        return status >= 0 && (status & 0x93) == 0x12 ? status : -1;
+    }
+}
@@ -0,0 +1,81 @@
+package de.paystory.thermal_printer;
+
+import java.util.Arrays;
+
+/**
+ * Converts rows of ARGB pixels to ESC/POS "GS v 0" raster commands band by band. The dithering
+ * error is carried over from one band to the next, so an image can be encoded in horizontal bands
+ * with the same result as in one piece while only one band is kept in memory.
+ */
+public class RasterEncoder {
+    public static final int MAX_BAND_HEIGHT = 255;
+
+    private final int width;
+    private final int bytesPerLine;
+    private final boolean dither;
+    private int[] errors;
+    private int[] nextErrors;
+
+    public RasterEncoder(int width, boolean dither) {
+        this.width = width;
+        this.bytesPerLine = (width + 7) / 8;
+        this.dither = dither;
+        this.errors = new int[width + 2];
+        this.nextErrors = new int[width + 2];
+    }
+
+    public int getWidth() {
+        return this.width;
+    }
+
+    public byte[] encode(int[] pixels, int rows) {
+        byte[] band = new byte[8 + this.bytesPerLine * rows];
+        band[0] = 0x1D;
+        band[1] = 0x76;
+        band[2] = 0x30;
+        band[3] = 0x00;
+        band[4] = (byte) (this.bytesPerLine & 0xFF);
+        band[5] = (byte) ((this.bytesPerLine >> 8) & 0xFF);
+        band[6] = (byte) (rows & 0xFF);
+        band[7] = (byte) ((rows >> 8) & 0xFF);
+
+        for (int y = 0; y < rows; y++) {
+            int rowOffset = y * this.width;
+            int bandOffset = 8 + y * this.bytesPerLine;
+            for (int x = 0; x < this.width; x++) {
+                int value = luminance(pixels[rowOffset + x]);
+                boolean black;
+                if (this.dither) {
+                    value += this.errors[x + 1] / 16;
+                    black = value < 128;
+                    int error = value - (black ? 0 : 255);
+                    this.errors[x + 2] += error * 7;
+                    this.nextErrors[x] += error * 3;
+                    this.nextErrors[x + 1] += error * 5;
+                    this.nextErrors[x + 2] += error;
+                } else {
+                    black = value < 128;
+                }
+                if (black) {
+                    band[bandOffset + (x >> 3)] |= (byte) (0x80 >> (x & 7));
+                }
+            }
+            if (this.dither) {
+                int[] swap = this.errors;
+                this.errors = this.nextErrors;
+                this.nextErrors = swap;
+                Arrays.fill(this.nextErrors, 0);
+            }
+        }
+        return band;
+    }
+
+    static int luminance(int argb) {
+        int alpha = (argb >>> 24) & 0xFF;
+        int red = (argb >> 16) & 0xFF;
+        int green = (argb >> 8) & 0xFF;
+        int blue = argb & 0xFF;
+        int luminance = (red * 299 + green * 587 + blue * 114) / 1000;
+        return 255 - alpha * (255 - luminance) / 255;
+    }
+}
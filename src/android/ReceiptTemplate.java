@@ -0,0 +1,155 @@
+package de.paystory.thermal_printer;
+
+import com.dantsu.escposprinter.EscPosPrinter;
+
+import org.json.JSONObject;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Formatted text with {{placeholders}}. Lines without placeholders are rendered to ESC/POS bytes
+ * once per printer configuration, only the lines with placeholders are parsed on every print.
+ * Every block is rendered by a new printer, because a printer skips style commands matching the
+ * style it sent last although every block starts with a printer reset (ESC @).
+ */
+public class ReceiptTemplate {
+    private static final Pattern PLACEHOLDER = Pattern.compile("\\{\\{\\s*([\\w.-]+)\\s*\\}\\}");
+
+    public interface PrinterFactory {
+        EscPosPrinter create(ByteCaptureConnection captureConnection) throws Exception;
+    }
+
+    private static class DynamicBlock {
+        private final ArrayList<String> literals = new ArrayList<>();
+        private final ArrayList<String> variables = new ArrayList<>();
+
+        private String render(JSONObject values) {
+            StringBuilder text = new StringBuilder();
+            for (int i = 0; i < this.literals.size(); i++) {
+                text.append(this.literals.get(i));
+                if (i < this.variables.size()) {
+                    Object value = values != null ? values.opt(this.variables.get(i)) : null;
+                    if (value != null && value != JSONObject.NULL) {
+                        text.append(value);
+                    }
+                }
+            }
+            return text.toString();
+        }
+    }
+
+    private static class Compiled {
+        private final ByteCaptureConnection captureConnection = new ByteCaptureConnection(1024);
+        private final ArrayList<Object> segments = new ArrayList<>();
+        private int staticSize;
+    }
+
+    private final ArrayList<Object> blocks = new ArrayList<>();
+    private final Set<String> placeholders = new LinkedHashSet<>();
+    private final ConcurrentHashMap<String, Compiled> compiled = new ConcurrentHashMap<>();
+
+    public ReceiptTemplate(String text) {
+        StringBuilder staticText = null;
+        DynamicBlock dynamicBlock = null;
+        for (String line : text.split("\n", -1)) {
+            Matcher matcher = PLACEHOLDER.matcher(line);
+            if (!matcher.find()) {
+                if (dynamicBlock != null) {
+                    this.blocks.add(dynamicBlock);
+                    dynamicBlock = null;
+                }
+                staticText = staticText == null ? new StringBuilder(line) : staticText.append('\n').append(line);
+                continue;
+            }
+            if (staticText != null) {
+                this.blocks.add(staticText.toString());
+                staticText = null;
+            }
+            if (dynamicBlock == null) {
+                dynamicBlock = new DynamicBlock();
+            } else {
+                int last = dynamicBlock.literals.size() - 1;
+                dynamicBlock.literals.set(last, dynamicBlock.literals.get(last) + "\n");
+            }
+            int position = 0;
+            do {
+                this.appendLiteral(dynamicBlock, line.substring(position, matcher.start()));
+                dynamicBlock.variables.add(matcher.group(1));
+                dynamicBlock.literals.add("");
+                this.placeholders.add(matcher.group(1));
+                position = matcher.end();
+            } while (matcher.find());
+            this.appendLiteral(dynamicBlock, line.substring(position));
+        }
+        if (staticText != null) {
+            this.blocks.add(staticText.toString());
+        }
+        if (dynamicBlock != null) {
+            this.blocks.add(dynamicBlock);
+        }
+    }
+
+    public Set<String> getPlaceholders() {
+        return this.placeholders;
+    }
+
+    public byte[] render(String printerSettingsKey, PrinterFactory printerFactory, JSONObject variables) throws Exception {
+        Compiled compiled = this.compile(printerSettingsKey, printerFactory);
+        synchronized (compiled) {
+            ByteArrayOutputStream output = new ByteArrayOutputStream(compiled.staticSize + 256);
+            for (Object segment : compiled.segments) {
+                if (segment instanceof byte[]) {
+                    byte[] bytes = (byte[]) segment;
+                    output.write(bytes, 0, bytes.length);
+                } else {
+                    compiled.captureConnection.reset();
+                    printerFactory.create(compiled.captureConnection).printFormattedText(((DynamicBlock) segment).render(variables), 0);
+                    output.write(compiled.captureConnection.toByteArray());
+                }
+            }
+            return output.toByteArray();
+        }
+    }
+
+    private Compiled compile(String printerSettingsKey, PrinterFactory printerFactory) throws Exception {
+        Compiled compiled = this.compiled.get(printerSettingsKey);
+        if (compiled != null) {
+            return compiled;
+        }
+        synchronized (this.compiled) {
+            compiled = this.compiled.get(printerSettingsKey);
+            if (compiled != null) {
+                return compiled;
+            }
+            compiled = new Compiled();
+            for (Object block : this.blocks) {
+                if (block instanceof String) {
+                    compiled.captureConnection.reset();
+                    printerFactory.create(compiled.captureConnection).printFormattedText((String) block, 0);
+                    byte[] bytes = compiled.captureConnection.toByteArray();
+                    compiled.segments.add(bytes);
+                    compiled.staticSize += bytes.length;
+                } else {
+                    compiled.segments.add(block);
+                }
+            }
+            this.compiled.put(printerSettingsKey, compiled);
+            return compiled;
+        }
+    }
+
+    private void appendLiteral(DynamicBlock dynamicBlock, String literal) {
+        if (dynamicBlock.literals.isEmpty()) {
+            dynamicBlock.literals.add(literal);
+            return;
+        }
+        int last = dynamicBlock.literals.size() - 1;
+        dynamicBlock.literals.set(last, dynamicBlock.literals.get(last) + literal);
+    }
+}
@@ -0,0 +1,21 @@
+package de.paystory.thermal_printer;
+
+import com.dantsu.escposprinter.exceptions.EscPosConnectionException;
+
+/**
+ * Connection that can read the answers of the printer, so its real-time status (DLE EOT) can be
+ * queried and writes can be paced by the readiness of the printer (GS r) instead of fixed sleeps.
+ */
+public interface StatusConnection {
+    /**
+     * Sends the command and returns the status byte of the answer, or -1 if the printer didn't
+     * answer within the timeout.
+     */
+    int requestStatus(byte[] command, int timeoutMs) throws EscPosConnectionException;
+
+    /**
+     * After every write wait up to this time until the printer has processed the data, 0 disables
+     * waiting for the printer.
+     */
+    void setReadyTimeout(int readyTimeoutMs);
+}
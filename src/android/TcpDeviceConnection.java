@@ -0,0 +1,205 @@
+package de.paystory.thermal_printer;
+
+import com.dantsu.escposprinter.connection.DeviceConnection;
+import com.dantsu.escposprinter.exceptions.EscPosConnectionException;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+
+/**
+ * Persistent TCP connection to a network printer with configurable connect and read timeouts and
+ * TCP_NODELAY, so the socket can stay open and be reused across jobs.
+ */
+public class TcpDeviceConnection extends DeviceConnection implements DirectWriteConnection, StatusConnection {
+    private static final long PEER_CHECK_AFTER_MS = 2000;
+
+    private final String address;
+    private final int port;
+    private final int connectTimeout;
+    private final int readTimeout;
+    private volatile Socket socket = null;
+    private volatile long lastActivityAt;
+    private volatile int readyTimeoutMs = 0;
+    private boolean answersReady = true;
+
+    public TcpDeviceConnection(String address, int port, int connectTimeout, int readTimeout) {
+        super();
+        this.address = address;
+        this.port = port;
+        this.connectTimeout = connectTimeout;
+        this.readTimeout = readTimeout;
+    }
+
+    public String getAddress() {
+        return this.address;
+    }
+
+    public int getPort() {
+        return this.port;
+    }
+
+    /**
+     * Only checks the local socket state, so it can be called from any thread. A connection closed
+     * by the printer is detected before the next write (see reconnectIfClosedByPeer).
+     */
+    @Override
+    public boolean isConnected() {
+        Socket socket = this.socket;
+        return socket != null && socket.isConnected() && !socket.isClosed() && super.isConnected();
+    }
+
+    @Override
+    public synchronized TcpDeviceConnection connect() throws EscPosConnectionException {
+        if (this.isConnected()) {
+            return this;
+        }
+        try {
+            this.socket = new Socket();
+            this.socket.setTcpNoDelay(true);
+            this.socket.setKeepAlive(true);
+            this.socket.setSoTimeout(this.readTimeout);
+            this.socket.connect(new InetSocketAddress(InetAddress.getByName(this.address), this.port), this.connectTimeout);
+            this.outputStream = this.socket.getOutputStream();
+            this.data = new byte[0];
+            this.lastActivityAt = System.currentTimeMillis();
+            this.answersReady = true;
+        } catch (IOException e) {
+            this.disconnect();
+            throw new EscPosConnectionException("Unable to connect to TCP device " + this.address + ":" + this.port + ".");
+        }
+        return this;
+    }
+
+    @Override
+    public synchronized TcpDeviceConnection disconnect() {
+        this.data = new byte[0];
+        if (this.outputStream != null) {
+            try {
+                this.outputStream.close();
+            } catch (IOException ignored) {}
+            this.outputStream = null;
+        }
+        if (this.socket != null) {
+            try {
+                this.socket.close();
+            } catch (IOException ignored) {}
+            this.socket = null;
+        }
+        return this;
+    }
+
+    /**
+     * TCP already applies backpressure when the printer buffer is full, so unlike the Bluetooth and
+     * USB connections no waiting time proportional to the data length is added here.
+     */
+    @Override
+    public synchronized void send(int addWaitingTime) throws EscPosConnectionException {
+        if (!this.isConnected()) {
+            throw new EscPosConnectionException("Unable to send data to device.");
+        }
+        this.reconnectIfClosedByPeer();
+        try {
+            this.outputStream.write(this.data);
+            this.outputStream.flush();
+            this.data = new byte[0];
+            this.lastActivityAt = System.currentTimeMillis();
+            if (addWaitingTime > 0) {
+                Thread.sleep(addWaitingTime);
+            }
+        } catch (IOException | InterruptedException e) {
+            this.disconnect();
+            throw new EscPosConnectionException(e.getMessage());
+        }
+    }
+
+    @Override
+    public synchronized void writeDirect(byte[] bytes, int offset, int length) throws EscPosConnectionException {
+        if (!this.isConnected()) {
+            throw new EscPosConnectionException("Unable to send data to device.");
+        }
+        this.reconnectIfClosedByPeer();
+        try {
+            if (this.data.length > 0) {
+                this.outputStream.write(this.data);
+                this.data = new byte[0];
+            }
+            this.outputStream.write(bytes, offset, length);
+            this.outputStream.flush();
+            this.lastActivityAt = System.currentTimeMillis();
+        } catch (IOException e) {
+            this.disconnect();
+            throw new EscPosConnectionException(e.getMessage());
+        }
+        if (this.readyTimeoutMs > 0 && this.answersReady) {
+            this.answersReady = PrinterStatus.waitUntilReady(this, this.readyTimeoutMs);
+        }
+    }
+
+    @Override
+    public synchronized int requestStatus(byte[] command, int timeoutMs) throws EscPosConnectionException {
+        if (!this.isConnected()) {
+            throw new EscPosConnectionException("Unable to send data to device.");
+        }
+        this.reconnectIfClosedByPeer();
+        try {
+            InputStream inputStream = this.socket.getInputStream();
+            PrinterStatus.skipAvailable(inputStream);
+            this.outputStream.write(command);
+            this.outputStream.flush();
+            this.lastActivityAt = System.currentTimeMillis();
+            return PrinterStatus.read(inputStream, timeoutMs);
+        } catch (IOException e) {
+            this.disconnect();
+            throw new EscPosConnectionException(e.getMessage());
+        }
+    }
+
+    /**
+     * TCP already stops the writes when the printer buffer is full, waiting for the printer is only
+     * needed to know that the data has been processed.
+     */
+    @Override
+    public void setReadyTimeout(int readyTimeoutMs) {
+        this.readyTimeoutMs = Math.max(0, readyTimeoutMs);
+    }
+
+    /**
+     * Printers close idle connections without the socket noticing it, the first write would then
+     * get lost. After some inactivity the socket is probed and reopened if the printer closed it.
+     * Called only from the synchronized write and status methods, no answer is outstanding then.
+     */
+    private void reconnectIfClosedByPeer() throws EscPosConnectionException {
+        if (System.currentTimeMillis() - this.lastActivityAt <= PEER_CHECK_AFTER_MS) {
+            return;
+        }
+        if (this.isClosedByPeer()) {
+            // keep the bytes queued with write(), connect() and disconnect() clear them
+            byte[] data = this.data;
+            this.disconnect();
+            this.connect();
+            this.data = data;
+        }
+        this.lastActivityAt = System.currentTimeMillis();
+    }
+
+    private boolean isClosedByPeer() {
+        try {
+            InputStream inputStream = this.socket.getInputStream();
+            PrinterStatus.skipAvailable(inputStream);
+            this.socket.setSoTimeout(1);
+            try {
+                return inputStream.read() == -1;
+            } finally {
+                this.socket.setSoTimeout(this.readTimeout);
+            }
+        } catch (SocketTimeoutException e) {
+            return false;
+        } catch (IOException e) {
+            return true;
+        }
+    }
+}
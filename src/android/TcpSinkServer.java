@@ -0,0 +1,146 @@
+package de.paystory.thermal_printer;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Local TCP server which accepts print data like a network printer on 127.0.0.1 and discards it.
+ * The read throughput can be limited, so the socket buffers fill up and the sender sees the same
+ * backpressure as with a slow printer. Status requests (DLE EOT n, GS r n) are answered with
+ * "online, paper present" after the configured latency.
+ */
+public class TcpSinkServer {
+    private static final int READ_BUFFER_SIZE = 1024;
+    private static final int RECEIVE_BUFFER_SIZE = 4096;
+
+    private final int latencyMs;
+    private final long bytesPerSecond;
+    private final AtomicLong connections = new AtomicLong();
+    private final AtomicLong bytes = new AtomicLong();
+    private final AtomicLong statusRequests = new AtomicLong();
+    private final Set<Socket> clients = Collections.synchronizedSet(new HashSet<>());
+    private ServerSocket serverSocket;
+    private ExecutorService executor;
+
+    public TcpSinkServer(int latencyMs, long bytesPerSecond) {
+        this.latencyMs = Math.max(0, latencyMs);
+        this.bytesPerSecond = Math.max(0, bytesPerSecond);
+    }
+
+    /**
+     * Starts listening on the port, 0 picks a free port. Returns the port.
+     */
+    public synchronized int start(int port) throws IOException {
+        if (this.serverSocket != null) {
+            return this.serverSocket.getLocalPort();
+        }
+        this.serverSocket = new ServerSocket();
+        this.serverSocket.setReceiveBufferSize(RECEIVE_BUFFER_SIZE);
+        this.serverSocket.bind(new InetSocketAddress(InetAddress.getByName("127.0.0.1"), port), 50);
+        this.executor = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "ThermalPrinter-TcpSink");
+            thread.setDaemon(true);
+            return thread;
+        });
+        ServerSocket serverSocket = this.serverSocket;
+        this.executor.execute(() -> this.accept(serverSocket));
+        return serverSocket.getLocalPort();
+    }
+
+    public synchronized void stop() {
+        if (this.serverSocket == null) {
+            return;
+        }
+        try {
+            this.serverSocket.close();
+        } catch (IOException ignored) {}
+        synchronized (this.clients) {
+            for (Socket client : this.clients) {
+                try {
+                    client.close();
+                } catch (IOException ignored) {}
+            }
+            this.clients.clear();
+        }
+        this.executor.shutdownNow();
+        this.serverSocket = null;
+        this.executor = null;
+    }
+
+    public synchronized JSONObject toJSON() throws JSONException {
+        JSONObject stats = new JSONObject();
+        stats.put("address", "127.0.0.1");
+        stats.put("port", this.serverSocket != null ? this.serverSocket.getLocalPort() : 0);
+        stats.put("running", this.serverSocket != null);
+        stats.put("connections", this.connections.get());
+        stats.put("activeConnections", this.clients.size());
+        stats.put("bytes", this.bytes.get());
+        stats.put("statusRequests", this.statusRequests.get());
+        return stats;
+    }
+
+    private void accept(ServerSocket serverSocket) {
+        while (!serverSocket.isClosed()) {
+            try {
+                Socket client = serverSocket.accept();
+                this.connections.incrementAndGet();
+                this.clients.add(client);
+                this.executor.execute(() -> this.serve(client));
+            } catch (Exception e) {
+                // closed by stop() or executor shut down
+            }
+        }
+    }
+
+    private void serve(Socket client) {
+        byte[] buffer = new byte[READ_BUFFER_SIZE];
+        int previous = -1;
+        int beforePrevious = -1;
+        try {
+            InputStream inputStream = client.getInputStream();
+            OutputStream outputStream = client.getOutputStream();
+            int read;
+            while ((read = inputStream.read(buffer)) != -1) {
+                this.bytes.addAndGet(read);
+                for (int i = 0; i < read; i++) {
+                    int current = buffer[i] & 0xFF;
+                    if ((beforePrevious == 0x10 && previous == 0x04) || (beforePrevious == 0x1D && previous == 0x72)) {
+                        this.statusRequests.incrementAndGet();
+                        if (this.latencyMs > 0) {
+                            Thread.sleep(this.latencyMs);
+                        }
+                        outputStream.write(beforePrevious == 0x10 ? 0x12 : 0x00);
+                        outputStream.flush();
+                        current = -1;
+                    }
+                    beforePrevious = previous;
+                    previous = current;
+                }
+                if (this.bytesPerSecond > 0) {
+                    long nanos = read * 1000000000L / this.bytesPerSecond;
+                    Thread.sleep(nanos / 1000000L, (int) (nanos % 1000000L));
+                }
+            }
+        } catch (IOException | InterruptedException ignored) {
+        } finally {
+            this.clients.remove(client);
+            try {
+                client.close();
+            } catch (IOException ignored) {}
+        }
+    }
+}
@@ -5,13 +5,11 @@ import static android.app.PendingIntent.FLAG_MUTABLE;
 import android.Manifest;
 import android.app.PendingIntent;
 import android.bluetooth.BluetoothAdapter;
-import android.bluetooth.BluetoothDevice;
 import android.content.BroadcastReceiver;
 import android.content.Context;
 import android.content.Intent;
 import android.content.IntentFilter;
 import android.graphics.Bitmap;
-import android.graphics.BitmapFactory;
 import android.hardware.usb.UsbDevice;
 import android.hardware.usb.UsbManager;
 import android.util.Base64;
@@ -20,23 +18,31 @@ import com.dantsu.escposprinter.EscPosCharsetEncoding;
 import com.dantsu.escposprinter.EscPosPrinter;
 import com.dantsu.escposprinter.connection.DeviceConnection;
 import com.dantsu.escposprinter.connection.bluetooth.BluetoothConnection;
-import com.dantsu.escposprinter.connection.bluetooth.BluetoothConnections;
 import com.dantsu.escposprinter.connection.bluetooth.BluetoothPrintersConnections;
-import com.dantsu.escposprinter.connection.tcp.TcpConnection;
 import com.dantsu.escposprinter.connection.usb.UsbConnection;
-import com.dantsu.escposprinter.connection.usb.UsbConnections;
 import com.dantsu.escposprinter.exceptions.EscPosConnectionException;
 import com.dantsu.escposprinter.textparser.PrinterTextParserImg;
 
 import org.apache.cordova.CallbackContext;
 import org.apache.cordova.CordovaPlugin;
+import org.apache.cordova.CordovaWebView;
+import org.apache.cordova.PluginResult;
 import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
 
+import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.HashMap;
-import java.util.Objects;
+import java.util.Iterator;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
 
 import android.os.Build;
 import android.content.pm.PackageManager;
@@ -45,7 +51,28 @@ import androidx.core.content.ContextCompat;
 import org.apache.cordova.CordovaInterface;
 
 public class ThermalPrinterCordovaPlugin extends CordovaPlugin {
-    private final HashMap<String, DeviceConnection> connections = new HashMap<>();
+    private static final byte[] STATUS_REQUEST_COMMAND = new byte[]{0x10, 0x04, 0x01};
+    private static final int BATCH_FLUSH_SIZE = 64 * 1024;
+    private static final byte[] CUT_PAPER_COMMAND = new byte[]{0x1D, 0x56, 0x01};
+    private static final PluginResult OK_RESULT = new PluginResult(PluginResult.Status.OK);
+
+    private final PrintJobQueue printJobQueue = new PrintJobQueue();
+    private final PrinterCache printerCache = new PrinterCache();
+    private final ConcurrentHashMap<String, ReceiptTemplate> templates = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, JSONArray> printerGroups = new ConcurrentHashMap<>();
+    private final PrintMetrics printMetrics = new PrintMetrics();
+    private ScheduledExecutorService metricsPush;
+    private CallbackContext metricsCallbackContext;
+    private ConnectionPool connectionPool;
+    private ImageCache imageCache;
+    private PrinterRegistry printerRegistry;
+    private volatile PrintSpool printSpool;
+    private volatile IOException printSpoolError;
+    private final ConcurrentHashMap<String, JSONObject> warmPrinters = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, CallbackContext> printerWatchers = new ConcurrentHashMap<>();
+    private final TransportRegistry transportRegistry = new TransportRegistry();
+    private final ConcurrentHashMap<String, VirtualDeviceConnection> virtualPrinters = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Integer, TcpSinkServer> virtualServers = new ConcurrentHashMap<>();
 
     public static final int PERMISSION_BLUETOOTH = 1;
     public static final int PERMISSION_BLUETOOTH_ADMIN = 2;
@@ -53,6 +80,90 @@ public class ThermalPrinterCordovaPlugin extends CordovaPlugin {
     public static final int PERMISSION_BLUETOOTH_SCAN = 4;
     private CallbackContext btCallbackContext;
 
+    @Override
+    protected void pluginInitialize() {
+        this.registerTransports();
+        this.connectionPool = new ConnectionPool(
+            this.preferences.getInteger("ThermalPrinterMaxConnections", 8),
+            this.preferences.getInteger("ThermalPrinterIdleTimeout", 300) * 1000L,
+            this.preferences.getInteger("ThermalPrinterKeepAliveInterval", 0) * 1000L
+        );
+        this.connectionPool.setKeepAliveHandler((key, connection) -> this.printJobQueue.execute(key, () -> {
+            try {
+                connection.write(STATUS_REQUEST_COMMAND);
+                connection.send();
+            } catch (Exception e) {
+                this.connectionPool.evict(key);
+            }
+        }));
+        this.connectionPool.setKeyExecutor(this.printJobQueue::execute);
+        this.connectionPool.setReconnectListener((key, startedAt, success) -> {
+            this.printMetrics.addReconnect(key);
+            if (success) {
+                this.printMetrics.record(key, PrintMetrics.Stage.CONNECT, startedAt);
+            } else {
+                this.printMetrics.addFailure(key, PrintMetrics.Stage.CONNECT);
+            }
+        });
+        this.connectionPool.start();
+        this.imageCache = new ImageCache(
+            this.preferences.getInteger("ThermalPrinterImageCacheSize", 4096) * 1024L,
+            this.preferences.getBoolean("ThermalPrinterImageDiskCache", false)
+                ? new File(this.cordova.getActivity().getCacheDir(), "thermal-printer-images")
+                : null,
+            this.preferences.getInteger("ThermalPrinterImageDiskCacheSize", 16384) * 1024L
+        );
+        this.printerRegistry = new PrinterRegistry(this.cordova.getActivity().getApplicationContext());
+        this.printerRegistry.setConnectedFilter((type, id) -> this.connectionPool.contains(type + "-" + id));
+        this.printerRegistry.addListener("connection-pool", (event, type, printer) -> {
+            // only detached USB and unpaired Bluetooth printers are gone for sure, a TCP printer
+            // missing a scan may just be busy
+            if (event.equals(PrinterRegistry.EVENT_LOST) && (type.equals("usb") || type.equals("bluetooth"))) {
+                JSONArray ids = printer.optJSONArray("ids");
+                for (int i = 0; ids != null && i < ids.length(); i++) {
+                    String key = type + "-" + ids.optString(i);
+                    if (this.connectionPool.contains(key)) {
+                        this.printJobQueue.execute(key, () -> this.connectionPool.evict(key));
+                    }
+                }
+            }
+        });
+        this.printerRegistry.addListener("spool", (event, type, printer) -> {
+            PrintSpool spool = this.printSpool;
+            JSONArray ids = printer.optJSONArray("ids");
+            if (spool != null && event.equals(PrinterRegistry.EVENT_FOUND)) {
+                for (int i = 0; ids != null && i < ids.length(); i++) {
+                    spool.retryNow(type + "-" + ids.optString(i));
+                }
+            }
+        });
+        this.printerRegistry.start(this.preferences.getInteger("ThermalPrinterUsbPollInterval", 5) * 1000L);
+
+        PrintSpool spool = new PrintSpool(
+            new File(this.cordova.getActivity().getFilesDir(), "thermal-printer-spool"),
+            (job, completion) -> this.printJobQueue.submit(job.getPrinterKey(), printJob -> {
+                try {
+                    this.printSpooledJob(job);
+                } catch (Exception e) {
+                    // only a missing or disconnected printer is worth retrying, a render error stays
+                    completion.onComplete(e, e instanceof EscPosConnectionException);
+                    throw e;
+                }
+                completion.onComplete(null, false);
+            }, null),
+            this.preferences.getInteger("ThermalPrinterSpoolRetryDelay", 1000),
+            this.preferences.getInteger("ThermalPrinterSpoolMaxRetryDelay", 60000)
+        );
+        this.cordova.getThreadPool().execute(() -> {
+            try {
+                spool.open();
+                this.printSpool = spool;
+            } catch (IOException e) {
+                this.printSpoolError = e;
+            }
+        });
+    }
+
     @Override
     public boolean execute(String action, JSONArray args, final CallbackContext callbackContext) {
         cordova.getThreadPool().execute(() -> {
@@ -66,15 +177,83 @@ public class ThermalPrinterCordovaPlugin extends CordovaPlugin {
                 } else if (action.startsWith("requestBTPermissions")) {
                     ThermalPrinterCordovaPlugin.this.requestBTPermissions(callbackContext , args.getJSONObject(0));
                 } else if (action.startsWith("printFormattedText")) {
-                    ThermalPrinterCordovaPlugin.this.printFormattedText(callbackContext, action, args.getJSONObject(0));
+                    JSONObject data = ThermalPrinterCordovaPlugin.this.printerCache.resolve(args.getJSONObject(0));
+                    ThermalPrinterCordovaPlugin.this.runOnPrinterQueue(callbackContext, data, () -> ThermalPrinterCordovaPlugin.this.printFormattedText(callbackContext, action, data));
+                } else if (action.equals("printBatch")) {
+                    JSONObject data = ThermalPrinterCordovaPlugin.this.printerCache.resolve(args.getJSONObject(0));
+                    ThermalPrinterCordovaPlugin.this.runOnPrinterQueue(callbackContext, data, () -> ThermalPrinterCordovaPlugin.this.printBatch(callbackContext, data));
+                } else if (action.equals("registerTemplate")) {
+                    ThermalPrinterCordovaPlugin.this.registerTemplate(callbackContext, args.getJSONObject(0));
+                } else if (action.equals("printTemplate")) {
+                    JSONObject data = ThermalPrinterCordovaPlugin.this.printerCache.resolve(args.getJSONObject(0));
+                    ThermalPrinterCordovaPlugin.this.runOnPrinterQueue(callbackContext, data, () -> ThermalPrinterCordovaPlugin.this.printTemplate(callbackContext, data));
+                } else if (action.equals("printRawBytes")) {
+                    JSONObject data = ThermalPrinterCordovaPlugin.this.printerCache.resolve(args.getJSONObject(0));
+                    byte[] bytes = ThermalPrinterCordovaPlugin.this.getBinaryArgument(args, data);
+                    ThermalPrinterCordovaPlugin.this.runOnPrinterQueue(callbackContext, data, () -> ThermalPrinterCordovaPlugin.this.printRawBytes(callbackContext, data, bytes));
+                } else if (action.equals("enqueuePrint")) {
+                    ThermalPrinterCordovaPlugin.this.enqueuePrint(callbackContext, ThermalPrinterCordovaPlugin.this.printerCache.resolve(args.getJSONObject(0)));
+                } else if (action.equals("getQueueStatus")) {
+                    ThermalPrinterCordovaPlugin.this.getQueueStatus(callbackContext, args.optJSONObject(0));
+                } else if (action.equals("configurePrinter")) {
+                    ThermalPrinterCordovaPlugin.this.configurePrinter(callbackContext, args.getJSONObject(0));
                 } else if (action.equals("getEncoding")) {
-                    ThermalPrinterCordovaPlugin.this.getEncoding(callbackContext, args.getJSONObject(0));
+                    JSONObject data = ThermalPrinterCordovaPlugin.this.printerCache.resolve(args.getJSONObject(0));
+                    ThermalPrinterCordovaPlugin.this.runOnPrinterQueue(callbackContext, data, () -> ThermalPrinterCordovaPlugin.this.getEncoding(callbackContext, data));
                 } else if (action.equals("disconnectPrinter")) {
-                    ThermalPrinterCordovaPlugin.this.disconnectPrinter(callbackContext, args.getJSONObject(0));
+                    JSONObject data = ThermalPrinterCordovaPlugin.this.printerCache.resolve(args.getJSONObject(0));
+                    ThermalPrinterCordovaPlugin.this.runOnPrinterQueue(callbackContext, data, () -> ThermalPrinterCordovaPlugin.this.disconnectPrinter(callbackContext, data));
+                } else if (action.equals("getConnectionStats")) {
+                    callbackContext.success(ThermalPrinterCordovaPlugin.this.connectionPool.getStats());
                 } else if (action.equals("requestPermissions")) {
-                    ThermalPrinterCordovaPlugin.this.requestUSBPermissions(callbackContext, args.getJSONObject(0));
+                    ThermalPrinterCordovaPlugin.this.requestUSBPermissions(callbackContext, ThermalPrinterCordovaPlugin.this.printerCache.resolve(args.getJSONObject(0)));
                 } else if (action.equals("bitmapToHexadecimalString")) {
-                    ThermalPrinterCordovaPlugin.this.bitmapToHexadecimalString(callbackContext, args.getJSONObject(0));
+                    JSONObject data = ThermalPrinterCordovaPlugin.this.printerCache.resolve(args.getJSONObject(0));
+                    ThermalPrinterCordovaPlugin.this.bitmapToHexadecimalString(callbackContext, data, ThermalPrinterCordovaPlugin.this.getBinaryArgument(args, data));
+                } else if (action.equals("printImage")) {
+                    JSONObject data = ThermalPrinterCordovaPlugin.this.printerCache.resolve(args.getJSONObject(0));
+                    byte[] image = ThermalPrinterCordovaPlugin.this.getBinaryArgument(args, data);
+                    ThermalPrinterCordovaPlugin.this.runOnPrinterQueue(callbackContext, data, () -> ThermalPrinterCordovaPlugin.this.printImage(callbackContext, data, image));
+                } else if (action.equals("cacheImage")) {
+                    JSONObject data = ThermalPrinterCordovaPlugin.this.printerCache.resolve(args.getJSONObject(0));
+                    ThermalPrinterCordovaPlugin.this.cacheImage(callbackContext, data, ThermalPrinterCordovaPlugin.this.getBinaryArgument(args, data));
+                } else if (action.equals("getImageCacheStats")) {
+                    callbackContext.success(ThermalPrinterCordovaPlugin.this.imageCache.getStats());
+                } else if (action.equals("watchPrinters")) {
+                    ThermalPrinterCordovaPlugin.this.watchPrinters(callbackContext, args.optJSONObject(0));
+                } else if (action.equals("unwatchPrinters")) {
+                    ThermalPrinterCordovaPlugin.this.unwatchPrinters(callbackContext, args.getJSONObject(0));
+                } else if (action.equals("scanNetworkPrinters")) {
+                    ThermalPrinterCordovaPlugin.this.scanNetworkPrinters(callbackContext, args.optJSONObject(0));
+                } else if (action.equals("getPrinterStatus")) {
+                    JSONObject data = ThermalPrinterCordovaPlugin.this.printerCache.resolve(args.getJSONObject(0));
+                    ThermalPrinterCordovaPlugin.this.runOnPrinterQueue(callbackContext, data, () -> ThermalPrinterCordovaPlugin.this.getPrinterStatus(callbackContext, data));
+                } else if (action.equals("getVirtualOutput")) {
+                    ThermalPrinterCordovaPlugin.this.getVirtualOutput(callbackContext, args.getJSONObject(0));
+                } else if (action.equals("startVirtualServer")) {
+                    ThermalPrinterCordovaPlugin.this.startVirtualServer(callbackContext, args.optJSONObject(0));
+                } else if (action.equals("stopVirtualServer")) {
+                    ThermalPrinterCordovaPlugin.this.stopVirtualServer(callbackContext, args.getJSONObject(0));
+                } else if (action.equals("configureGroup")) {
+                    ThermalPrinterCordovaPlugin.this.configureGroup(callbackContext, args.getJSONObject(0));
+                } else if (action.equals("printToGroup")) {
+                    ThermalPrinterCordovaPlugin.this.printToGroup(callbackContext, args.getJSONObject(0));
+                } else if (action.equals("warmUp")) {
+                    ThermalPrinterCordovaPlugin.this.warmUp(callbackContext, args.optJSONObject(0));
+                } else if (action.equals("spoolPrint")) {
+                    ThermalPrinterCordovaPlugin.this.spoolPrint(callbackContext, ThermalPrinterCordovaPlugin.this.printerCache.resolve(args.getJSONObject(0)));
+                } else if (action.equals("getSpooledJobs")) {
+                    ThermalPrinterCordovaPlugin.this.getSpooledJobs(callbackContext, args.optJSONObject(0));
+                } else if (action.equals("cancelSpooledJob")) {
+                    ThermalPrinterCordovaPlugin.this.cancelSpooledJob(callbackContext, args.getJSONObject(0));
+                } else if (action.equals("getMetrics")) {
+                    ThermalPrinterCordovaPlugin.this.getMetrics(callbackContext, args.optJSONObject(0));
+                } else if (action.equals("resetMetrics")) {
+                    ThermalPrinterCordovaPlugin.this.printMetrics.reset();
+                    callbackContext.success();
+                } else if (action.equals("clearImageCache")) {
+                    ThermalPrinterCordovaPlugin.this.imageCache.clear();
+                    callbackContext.success();
                 }
             } catch (JSONException exception) {
                 callbackContext.error(exception.getMessage());
@@ -84,6 +263,495 @@ public class ThermalPrinterCordovaPlugin extends CordovaPlugin {
         return true;
     }
 
+    /**
+     * Closes the pooled connections when the app goes to the background, so the printers are not
+     * blocked for other devices and no half-dead Bluetooth sockets are kept.
+     */
+    @Override
+    public void onPause(boolean multitasking) {
+        super.onPause(multitasking);
+        this.printerRegistry.setActive(false);
+        if (!this.preferences.getBoolean("ThermalPrinterReleaseOnPause", true)) {
+            return;
+        }
+        for (String key : this.connectionPool.getKeys()) {
+            this.printJobQueue.execute(key, () -> this.connectionPool.evict(key));
+        }
+    }
+
+    /**
+     * Reconnects the warmed up printers in the background and retries the spooled jobs, so the
+     * first print after resuming the app doesn't wait for the connection.
+     */
+    @Override
+    public void onResume(boolean multitasking) {
+        super.onResume(multitasking);
+        this.printerRegistry.setActive(true);
+        this.cordova.getThreadPool().execute(() -> {
+            this.printerRegistry.refresh("usb");
+            this.printerRegistry.refresh("bluetooth");
+            for (JSONObject data : this.warmPrinters.values()) {
+                try {
+                    String printerKey = this.getConnectionKey(data);
+                    this.printJobQueue.execute(printerKey, () -> this.warmUpPrinter(printerKey, data));
+                } catch (JSONException ignored) {}
+            }
+            PrintSpool spool = this.printSpool;
+            if (spool != null) {
+                spool.retryAll();
+            }
+        });
+    }
+
+    @Override
+    public void onDestroy() {
+        this.connectionPool.shutdown();
+        this.printJobQueue.shutdown();
+        this.printerRegistry.stop();
+        this.stopMetricsPush();
+        if (this.printSpool != null) {
+            this.printSpool.close();
+        }
+        for (TcpSinkServer server : this.virtualServers.values()) {
+            server.stop();
+        }
+        this.virtualServers.clear();
+        for (VirtualDeviceConnection virtualPrinter : this.virtualPrinters.values()) {
+            virtualPrinter.disconnect();
+        }
+        super.onDestroy();
+    }
+
+    private interface PrinterAction {
+        void run() throws JSONException;
+    }
+
+    private void runOnPrinterQueue(CallbackContext callbackContext, JSONObject data, PrinterAction printerAction) throws JSONException {
+        this.printJobQueue.submit(this.getConnectionKey(data), job -> {
+            try {
+                printerAction.run();
+            } catch (JSONException exception) {
+                callbackContext.error(exception.getMessage());
+            } catch (Exception exception) {
+                // e.g. a SecurityException without Bluetooth permission, the job queue would only
+                // mark the job as failed and the call would never be answered
+                this.sendError(callbackContext, exception.getMessage() != null ? exception.getMessage() : exception.getClass().getSimpleName());
+            }
+        }, null);
+    }
+
+    private void enqueuePrint(CallbackContext callbackContext, JSONObject data) throws JSONException {
+        String text = data.getString("text");
+        boolean cut = data.optBoolean("cut", false);
+        String printerKey = this.getConnectionKey(data);
+        this.printJobQueue.submit(printerKey, job -> {
+            ErrorCollectingCallbackContext connectionCallbackContext = new ErrorCollectingCallbackContext(this.webView);
+            DeviceConnection deviceConnection = this.getPrinterConnection(connectionCallbackContext, data);
+            if (deviceConnection == null) {
+                throw new Exception(connectionCallbackContext.getError());
+            }
+            long startedAt = System.nanoTime();
+            this.writeToPrinter(printerKey, deviceConnection, this.renderFormattedText(printerKey, data, text, cut), this.getChunkSize(data));
+            this.printMetrics.addJob(printerKey);
+            this.printMetrics.record(printerKey, PrintMetrics.Stage.TOTAL, startedAt);
+        }, job -> {
+            try {
+                JSONObject status = job.toJSON();
+                if (job.getStatus() == PrintJobQueue.Status.QUEUED) {
+                    status.put("position", this.printJobQueue.getPendingCount(job.getPrinterKey()));
+                }
+                if (job.getStatus() == PrintJobQueue.Status.FAILED) {
+                    callbackContext.error(status);
+                    return;
+                }
+                PluginResult result = new PluginResult(PluginResult.Status.OK, status);
+                result.setKeepCallback(job.getStatus() != PrintJobQueue.Status.DONE);
+                callbackContext.sendPluginResult(result);
+            } catch (JSONException e) {
+                callbackContext.error(e.getMessage());
+            }
+        });
+    }
+
+    private void configureGroup(CallbackContext callbackContext, JSONObject data) throws JSONException {
+        String groupId = data.getString("groupId");
+        JSONArray printers = data.getJSONArray("printers");
+        this.printerGroups.put(groupId, printers);
+        callbackContext.success(new JSONObject(new HashMap<String, Object>() {{
+            put("groupId", groupId);
+            put("printers", printers.length());
+        }}));
+    }
+
+    /**
+     * Prints the same document on all printers of a group. Every printer is printed on its own job
+     * queue, so the printers are served in parallel and the call takes as long as the slowest one.
+     * The document is rendered once per distinct printer settings.
+     */
+    private void printToGroup(CallbackContext callbackContext, JSONObject data) throws JSONException {
+        JSONArray targets;
+        if (data.has("printers")) {
+            targets = data.getJSONArray("printers");
+        } else {
+            String groupId = data.getString("groupId");
+            targets = this.printerGroups.get(groupId);
+            if (targets == null) {
+                callbackContext.error(new JSONObject(new HashMap<String, Object>() {{
+                    put("error", "Group not found!");
+                    put("groupId", groupId);
+                }}));
+                return;
+            }
+        }
+
+        long startedAt = System.currentTimeMillis();
+        JSONArray results = new JSONArray();
+        AtomicInteger remaining = new AtomicInteger(targets.length());
+        AtomicInteger printed = new AtomicInteger();
+        AtomicInteger failed = new AtomicInteger();
+        ConcurrentHashMap<String, byte[]> rendered = new ConcurrentHashMap<>();
+        Runnable finish = () -> {
+            if (remaining.decrementAndGet() > 0) {
+                return;
+            }
+            try {
+                JSONObject groupResult = new JSONObject();
+                groupResult.put("printed", printed.get());
+                groupResult.put("failed", failed.get());
+                groupResult.put("durationMs", System.currentTimeMillis() - startedAt);
+                groupResult.put("results", results);
+                callbackContext.success(groupResult);
+            } catch (JSONException e) {
+                callbackContext.error(e.getMessage());
+            }
+        };
+        if (targets.length() == 0) {
+            remaining.incrementAndGet();
+            finish.run();
+            return;
+        }
+
+        for (int i = 0; i < targets.length(); i++) {
+            JSONObject result = new JSONObject();
+            result.put("index", i);
+            results.put(result);
+
+            JSONObject target;
+            String printerKey;
+            try {
+                target = this.getGroupTarget(data, targets.getJSONObject(i));
+                printerKey = this.getConnectionKey(target);
+                result.put("printerKey", printerKey);
+                if (target.has("printerId")) {
+                    result.put("printerId", target.getString("printerId"));
+                }
+            } catch (JSONException e) {
+                result.put("success", false);
+                result.put("error", e.getMessage());
+                failed.incrementAndGet();
+                finish.run();
+                continue;
+            }
+
+            this.printJobQueue.execute(printerKey, () -> {
+                long printStartedAt = System.currentTimeMillis();
+                try {
+                    result.put("queuedMs", printStartedAt - startedAt);
+                    try {
+                        this.printGroupTarget(printerKey, target, rendered);
+                        result.put("success", true);
+                        printed.incrementAndGet();
+                    } catch (Exception e) {
+                        result.put("success", false);
+                        result.put("error", e.getMessage());
+                        failed.incrementAndGet();
+                    }
+                    result.put("durationMs", System.currentTimeMillis() - printStartedAt);
+                } catch (JSONException ignored) {}
+                finish.run();
+            });
+        }
+    }
+
+    /**
+     * Merges the target with its printer profile and the group call. Every key of the group call
+     * (document and printer settings like printerDpi or charsetEncoding) applies to all targets
+     * which don't define it themselves or in their profile.
+     */
+    private JSONObject getGroupTarget(JSONObject data, JSONObject target) throws JSONException {
+        JSONObject merged = this.printerCache.resolve(new JSONObject(target.toString()));
+        Iterator<String> keys = data.keys();
+        while (keys.hasNext()) {
+            String key = keys.next();
+            if (!merged.has(key) && !key.equals("groupId") && !key.equals("printers") && !key.equals("printerId")) {
+                merged.put(key, data.get(key));
+            }
+        }
+        return merged;
+    }
+
+    private void printGroupTarget(String printerKey, JSONObject data, ConcurrentHashMap<String, byte[]> rendered) throws Exception {
+        ErrorCollectingCallbackContext callbackContext = new ErrorCollectingCallbackContext(this.webView);
+        DeviceConnection deviceConnection = this.getPrinterConnection(callbackContext, data);
+        if (deviceConnection == null) {
+            throw new Exception(callbackContext.getError());
+        }
+        long startedAt = System.nanoTime();
+        String text = data.getString("text");
+        boolean cut = data.optBoolean("cut", false);
+        String renderKey = this.getPrinterSettingsKey(data) + "|" + cut + "|" + this.getDotsFeedPaper(data) + "|" + text;
+        byte[] bytes = rendered.get(renderKey);
+        if (bytes == null) {
+            bytes = this.renderFormattedText(printerKey, data, text, cut);
+            rendered.putIfAbsent(renderKey, bytes);
+        }
+        this.writeToPrinter(printerKey, deviceConnection, bytes, this.getChunkSize(data));
+        this.printMetrics.addJob(printerKey);
+        this.printMetrics.record(printerKey, PrintMetrics.Stage.TOTAL, startedAt);
+    }
+
+    private void warmUp(CallbackContext callbackContext, JSONObject data) throws JSONException {
+        ArrayList<JSONObject> printers = new ArrayList<>();
+        if (data == null) {
+            printers.addAll(this.printerCache.getProfiles());
+        } else if (data.has("printers")) {
+            JSONArray printersData = data.getJSONArray("printers");
+            for (int i = 0; i < printersData.length(); i++) {
+                printers.add(this.printerCache.resolve(printersData.getJSONObject(i)));
+            }
+        } else {
+            printers.add(this.printerCache.resolve(data));
+        }
+
+        JSONArray results = new JSONArray();
+        if (printers.isEmpty()) {
+            callbackContext.success(results);
+            return;
+        }
+        AtomicInteger remaining = new AtomicInteger(printers.size());
+        for (JSONObject printer : printers) {
+            String printerKey = this.getConnectionKey(printer);
+            this.warmPrinters.put(printerKey, printer);
+            this.printJobQueue.execute(printerKey, () -> {
+                JSONObject result = this.warmUpPrinter(printerKey, printer);
+                synchronized (results) {
+                    results.put(result);
+                }
+                if (remaining.decrementAndGet() == 0) {
+                    callbackContext.success(results);
+                }
+            });
+        }
+    }
+
+    /**
+     * Looks up and connects the printer, returns the result with the duration.
+     */
+    private JSONObject warmUpPrinter(String printerKey, JSONObject data) {
+        long startedAt = System.currentTimeMillis();
+        JSONObject result = new JSONObject();
+        try {
+            result.put("printerKey", printerKey);
+            ErrorCollectingCallbackContext callbackContext = new ErrorCollectingCallbackContext(this.webView);
+            DeviceConnection deviceConnection = this.getPrinterConnection(callbackContext, data);
+            if (deviceConnection == null) {
+                result.put("connected", false);
+                result.put("error", callbackContext.getError());
+            } else {
+                result.put("connected", true);
+            }
+        } catch (Exception e) {
+            try {
+                result.put("connected", false);
+                result.put("error", e.getMessage());
+            } catch (JSONException ignored) {}
+        }
+        try {
+            result.put("durationMs", System.currentTimeMillis() - startedAt);
+        } catch (JSONException ignored) {}
+        return result;
+    }
+
+    private void spoolPrint(CallbackContext callbackContext, JSONObject data) throws JSONException {
+        PrintSpool spool = this.getPrintSpool(callbackContext);
+        if (spool == null) {
+            return;
+        }
+        data.getString("text");
+        String jobId = data.has("jobId") ? data.getString("jobId") : UUID.randomUUID().toString();
+        try {
+            boolean added = spool.enqueue(jobId, this.getConnectionKey(data), data, data.optInt("maxAttempts", 0));
+            callbackContext.success(new JSONObject(new HashMap<String, Object>() {{
+                put("jobId", jobId);
+                put("duplicate", !added);
+            }}));
+        } catch (IOException e) {
+            callbackContext.error(new JSONObject(new HashMap<String, Object>() {{
+                put("error", e.getMessage());
+                put("jobId", jobId);
+            }}));
+        }
+    }
+
+    private void getSpooledJobs(CallbackContext callbackContext, JSONObject data) throws JSONException {
+        PrintSpool spool = this.getPrintSpool(callbackContext);
+        if (spool == null) {
+            return;
+        }
+        String printerKey = null;
+        if (data != null && (data.has("printerId") || data.has("type"))) {
+            printerKey = this.getConnectionKey(this.printerCache.resolve(data));
+        }
+        callbackContext.success(spool.list(printerKey));
+    }
+
+    private void cancelSpooledJob(CallbackContext callbackContext, JSONObject data) throws JSONException {
+        PrintSpool spool = this.getPrintSpool(callbackContext);
+        if (spool == null) {
+            return;
+        }
+        String jobId = data.getString("jobId");
+        try {
+            if (!spool.cancel(jobId)) {
+                callbackContext.error(new JSONObject(new HashMap<String, Object>() {{
+                    put("error", "Job not found!");
+                    put("jobId", jobId);
+                }}));
+                return;
+            }
+        } catch (IOException e) {
+            callbackContext.error(new JSONObject(new HashMap<String, Object>() {{
+                put("error", e.getMessage());
+                put("jobId", jobId);
+            }}));
+            return;
+        }
+        callbackContext.success();
+    }
+
+    private PrintSpool getPrintSpool(CallbackContext callbackContext) {
+        PrintSpool spool = this.printSpool;
+        if (spool == null) {
+            IOException error = this.printSpoolError;
+            callbackContext.error(new JSONObject(new HashMap<String, Object>() {{
+                put("error", error != null ? "The spool is not available: " + error.getMessage() : "The spool is still opening!");
+            }}));
+        }
+        return spool;
+    }
+
+    /**
+     * Prints a spooled job. There is no JavaScript callback for it, so errors reported to the
+     * callback are collected and thrown as EscPosConnectionException to schedule a retry.
+     */
+    private void printSpooledJob(PrintSpool.Job job) throws Exception {
+        JSONObject data = job.getData();
+        String printerKey = job.getPrinterKey();
+        ErrorCollectingCallbackContext callbackContext = new ErrorCollectingCallbackContext(this.webView);
+        DeviceConnection deviceConnection = this.getPrinterConnection(callbackContext, data);
+        if (deviceConnection == null) {
+            throw new EscPosConnectionException(callbackContext.getError());
+        }
+        long startedAt = System.nanoTime();
+        byte[] bytes = this.renderFormattedText(printerKey, data, data.getString("text"), data.optBoolean("cut", false));
+        this.writeToPrinter(printerKey, deviceConnection, bytes, this.getChunkSize(data));
+        this.printMetrics.addJob(printerKey);
+        this.printMetrics.record(printerKey, PrintMetrics.Stage.TOTAL, startedAt);
+    }
+
+    /**
+     * Callback for work started by the plugin itself, keeps the error instead of sending it.
+     */
+    private static class ErrorCollectingCallbackContext extends CallbackContext {
+        private String error = "Device not found or not connected!";
+
+        private ErrorCollectingCallbackContext(CordovaWebView webView) {
+            super("ThermalPrinterInternal", webView);
+        }
+
+        @Override
+        public void sendPluginResult(PluginResult pluginResult) {
+            if (pluginResult.getStatus() != PluginResult.Status.ERROR.ordinal()) {
+                return;
+            }
+            try {
+                this.error = new JSONObject(pluginResult.getMessage()).optString("error", pluginResult.getMessage());
+            } catch (JSONException e) {
+                this.error = pluginResult.getMessage();
+            }
+        }
+
+        private String getError() {
+            return this.error;
+        }
+    }
+
+    private void getMetrics(CallbackContext callbackContext, JSONObject data) throws JSONException {
+        if (data == null || !data.has("interval")) {
+            callbackContext.success(this.printMetrics.toJSON());
+            return;
+        }
+        long interval = data.getLong("interval");
+        this.stopMetricsPush();
+        if (interval <= 0) {
+            callbackContext.success(this.printMetrics.toJSON());
+            return;
+        }
+        synchronized (this) {
+            this.metricsCallbackContext = callbackContext;
+            this.metricsPush = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "ThermalPrinter-Metrics");
+                thread.setDaemon(true);
+                return thread;
+            });
+            this.metricsPush.scheduleWithFixedDelay(() -> {
+                try {
+                    PluginResult result = new PluginResult(PluginResult.Status.OK, this.printMetrics.toJSON());
+                    result.setKeepCallback(true);
+                    callbackContext.sendPluginResult(result);
+                } catch (JSONException ignored) {}
+            }, 0, interval, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private synchronized void stopMetricsPush() {
+        if (this.metricsPush != null) {
+            this.metricsPush.shutdownNow();
+            this.metricsPush = null;
+        }
+        if (this.metricsCallbackContext != null) {
+            try {
+                this.metricsCallbackContext.success(this.printMetrics.toJSON());
+            } catch (JSONException ignored) {}
+            this.metricsCallbackContext = null;
+        }
+    }
+
+    private void configurePrinter(CallbackContext callbackContext, JSONObject data) throws JSONException {
+        String printerId = data.optString("printerId", this.getConnectionKey(data));
+        data.remove("printerId");
+        this.printerCache.configure(printerId, data);
+        callbackContext.success(new JSONObject(new HashMap<String, Object>() {{
+            put("printerId", printerId);
+        }}));
+    }
+
+    private void getQueueStatus(CallbackContext callbackContext, JSONObject data) throws JSONException {
+        if (data != null && data.has("jobId")) {
+            PrintJobQueue.PrintJob job = this.printJobQueue.getJob(data.getString("jobId"));
+            if (job == null) {
+                callbackContext.error(new JSONObject(new HashMap<String, Object>() {{
+                    put("error", "Job not found!");
+                    put("jobId", data.getString("jobId"));
+                }}));
+                return;
+            }
+            callbackContext.success(job.toJSON());
+            return;
+        }
+        callbackContext.success(this.printJobQueue.getStatus());
+    }
+
     private void requestBTPermissions(CallbackContext callbackContext, JSONObject data) throws JSONException {
         try {
             synchronized (this) {
@@ -156,29 +824,121 @@ public class ThermalPrinterCordovaPlugin extends CordovaPlugin {
         }
     }
 
-    private void bitmapToHexadecimalString(CallbackContext callbackContext, JSONObject data) throws JSONException {
-        String encodedString = data.getString("base64");
-        byte[] decodedString = Base64.decode(encodedString.contains(",")
-            ? encodedString.substring(encodedString.indexOf(",") + 1) : encodedString, Base64.DEFAULT);
-        data.put("bytes", decodedString);
-        this.bytesToHexadecimalString(callbackContext, data);
+    private void bitmapToHexadecimalString(CallbackContext callbackContext, JSONObject data, byte[] image) throws JSONException {
+        try {
+            byte[] raster = this.rasterizeImage(ImageCache.key(image, this.getPrinterSettingsKey(data)), image, data);
+            if (data.optBoolean("binary", false)) {
+                callbackContext.sendPluginResult(new PluginResult(PluginResult.Status.OK, raster));
+            } else {
+                callbackContext.success(ImageCache.toHexadecimalString(raster));
+            }
+        } catch (Exception e) {
+            this.sendError(callbackContext, e.getMessage());
+        }
     }
 
-    private void bytesToHexadecimalString(CallbackContext callbackContext, JSONObject data) throws JSONException {
-        EscPosPrinter printer = this.getPrinter(callbackContext, data);
+    private void cacheImage(CallbackContext callbackContext, JSONObject data, byte[] image) throws JSONException {
         try {
-            byte[] bytes = (byte[]) data.get("bytes");
-            Bitmap decodedByte = BitmapFactory.decodeByteArray(bytes, 0, bytes.length);
-            callbackContext.success(PrinterTextParserImg.bitmapToHexadecimalString(printer, decodedByte));
-        } catch (Exception e) {
-            callbackContext.error(new JSONObject(new HashMap<String, Object>() {{
-                put("error", e.getMessage());
+            String ref = ImageCache.key(image, this.getPrinterSettingsKey(data));
+            byte[] raster = this.rasterizeImage(ref, image, data);
+            callbackContext.success(new JSONObject(new HashMap<String, Object>() {{
+                put("ref", ref);
+                put("size", raster.length);
             }}));
+        } catch (Exception e) {
+            this.sendError(callbackContext, e.getMessage());
+        }
+    }
+
+    private byte[] rasterizeImage(String key, byte[] image, JSONObject data) throws Exception {
+        byte[] raster = this.imageCache.get(key);
+        if (raster != null) {
+            return raster;
+        }
+        String metricsKey = this.getMetricsKey(data);
+        long startedAt = System.nanoTime();
+        try {
+            Bitmap bitmap = ImageRasterizer.decodeSampled(image, this.getPrinterWidthPx(data));
+            try {
+                EscPosPrinter printer = this.createPrinter(new ByteCaptureConnection(0), data);
+                raster = ImageCache.fromHexadecimalString(PrinterTextParserImg.bitmapToHexadecimalString(printer, bitmap));
+            } finally {
+                bitmap.recycle();
+            }
+        } catch (Exception e) {
+            this.printMetrics.addFailure(metricsKey, PrintMetrics.Stage.IMAGE);
+            throw e;
+        }
+        this.printMetrics.record(metricsKey, PrintMetrics.Stage.IMAGE, startedAt);
+        this.imageCache.put(key, raster);
+        return raster;
+    }
+
+    private void printImage(CallbackContext callbackContext, JSONObject data, byte[] image) throws JSONException {
+        DeviceConnection deviceConnection = this.getPrinterConnection(callbackContext, data);
+        if (deviceConnection == null) {
+            return;
+        }
+        String printerKey = this.getConnectionKey(data);
+        long startedAt = System.nanoTime();
+        long[] writeNanos = new long[1];
+        try {
+            String align = data.optString("align", "center");
+            int chunkSize = this.getChunkSize(data);
+            if (!deviceConnection.isConnected()) {
+                deviceConnection.connect();
+            }
+            deviceConnection.write(new byte[]{0x1B, 0x61, (byte) (align.equals("right") ? 2 : align.equals("left") ? 0 : 1)});
+            ImageRasterizer.rasterize(
+                image,
+                this.getPrinterWidthPx(data),
+                data.optInt("bandHeight", ImageRasterizer.DEFAULT_BAND_HEIGHT),
+                data.optBoolean("dither", true),
+                band -> {
+                    long writeStartedAt = System.nanoTime();
+                    this.writeToPrinter(printerKey, deviceConnection, band, chunkSize);
+                    writeNanos[0] += System.nanoTime() - writeStartedAt;
+                }
+            );
+            this.printMetrics.recordDuration(printerKey, PrintMetrics.Stage.IMAGE, System.nanoTime() - startedAt - writeNanos[0]);
+            deviceConnection.write(new byte[]{0x1B, 0x61, 0x00});
+            this.writeFeedAndCut(deviceConnection, this.getDotsFeedPaper(data), data.optBoolean("cut", false));
+            deviceConnection.send();
+            this.printMetrics.addJob(printerKey);
+            this.printMetrics.record(printerKey, PrintMetrics.Stage.TOTAL, startedAt);
+            callbackContext.sendPluginResult(OK_RESULT);
+        } catch (Exception e) {
+            if (!(e instanceof EscPosConnectionException)) {
+                this.printMetrics.addFailure(printerKey, PrintMetrics.Stage.IMAGE);
+            }
+            this.sendError(callbackContext, e.getMessage());
+        }
+    }
+
+    private int getPrinterWidthPx(JSONObject data) {
+        return Math.round((float) data.optDouble("printerWidthMM", 48f) * data.optInt("printerDpi", 203) / 25.4f);
+    }
+
+    /**
+     * Returns the bytes passed as ArrayBuffer in the second argument or else as base64 string in the
+     * data. The base64 string is removed from the data, so it isn't kept while the job is queued.
+     */
+    private byte[] getBinaryArgument(JSONArray args, JSONObject data) throws JSONException {
+        if (args.length() > 1 && !args.isNull(1)) {
+            return Base64.decode(args.getString(1), Base64.DEFAULT);
         }
+        byte[] bytes = this.decodeBase64(data.getString("base64"));
+        data.remove("base64");
+        return bytes;
+    }
+
+    private byte[] decodeBase64(String encodedString) {
+        return Base64.decode(encodedString.contains(",")
+            ? encodedString.substring(encodedString.indexOf(",") + 1) : encodedString, Base64.DEFAULT);
     }
 
     private void requestUSBPermissions(CallbackContext callbackContext, JSONObject data) throws JSONException {
-        DeviceConnection connection = ThermalPrinterCordovaPlugin.this.getPrinterConnection(callbackContext, data);
+        DeviceConnection connection = ThermalPrinterCordovaPlugin.this.getPrinterConnection(callbackContext, data, false);
         if (connection != null) {
             String intentName = "thermalPrinterUSBRequest" + ((UsbConnection) connection).getDevice().getDeviceId();
 
@@ -231,8 +991,6 @@ public class ThermalPrinterCordovaPlugin extends CordovaPlugin {
     }
 
     private void listPrinters(CallbackContext callbackContext, JSONObject data) throws JSONException {
-        JSONArray printers = new JSONArray();
-
         String type = data.getString("type");
         if (type.equals("bluetooth")) {
             // if (!this.cordova.hasPermission(Manifest.permission.BLUETOOTH)) {
@@ -245,61 +1003,373 @@ public class ThermalPrinterCordovaPlugin extends CordovaPlugin {
                 return;
             }
             try {
-                BluetoothConnections printerConnections = new BluetoothConnections();
-                for (BluetoothConnection bluetoothConnection : printerConnections.getList()) {
-                    BluetoothDevice bluetoothDevice = bluetoothConnection.getDevice();
-                    JSONObject printerObj = new JSONObject();
-                    try { printerObj.put("address", bluetoothDevice.getAddress()); } catch (Exception ignored) {}
-                    try { printerObj.put("bondState", bluetoothDevice.getBondState()); } catch (Exception ignored) {}
-                    try { printerObj.put("name", bluetoothDevice.getName()); } catch (Exception ignored) {}
-                    try { printerObj.put("type", bluetoothDevice.getType()); } catch (Exception ignored) {}
-                    try { printerObj.put("features", bluetoothDevice.getUuids()); } catch (Exception ignored) {}
-                    try { printerObj.put("deviceClass", bluetoothDevice.getBluetoothClass().getDeviceClass()); } catch (Exception ignored) {}
-                    try { printerObj.put("majorDeviceClass", bluetoothDevice.getBluetoothClass().getMajorDeviceClass()); } catch (Exception ignored) {}
-                    printers.put(printerObj);
-                }
+                callbackContext.success(this.printerRegistry.list("bluetooth"));
             } catch (Exception e) {
                 callbackContext.error(new JSONObject(new HashMap<String, Object>() {{
                     put("error", e.getMessage());
                 }}));
             }
+        } else if (type.equals("tcp")) {
+            callbackContext.success(this.printerRegistry.list("tcp"));
+        } else if (type.equals("virtual")) {
+            JSONArray printers = new JSONArray();
+            for (VirtualDeviceConnection virtualPrinter : this.virtualPrinters.values()) {
+                printers.put(virtualPrinter.toJSON());
+            }
+            callbackContext.success(printers);
         } else {
-            UsbConnections printerConnections = new UsbConnections(this.cordova.getActivity());
-            for (UsbConnection usbConnection : printerConnections.getList()) {
-                UsbDevice usbDevice = usbConnection.getDevice();
-                JSONObject printerObj = new JSONObject();
-                try { printerObj.put("productName", Objects.requireNonNull(usbDevice.getProductName()).trim()); } catch (Exception ignored) {}
-                try { printerObj.put("manufacturerName", usbDevice.getManufacturerName()); } catch (Exception ignored) {}
-                try { printerObj.put("deviceId", usbDevice.getDeviceId()); } catch (Exception ignored) {}
-                try { printerObj.put("serialNumber", usbDevice.getSerialNumber()); } catch (Exception ignored) {}
-                try { printerObj.put("vendorId", usbDevice.getVendorId()); } catch (Exception ignored) {}
-                printers.put(printerObj);
+            callbackContext.success(this.printerRegistry.list("usb"));
+        }
+    }
+
+    private void watchPrinters(CallbackContext callbackContext, JSONObject data) throws JSONException {
+        String watchId = callbackContext.getCallbackId();
+        JSONArray types = data != null ? data.optJSONArray("types") : null;
+        this.printerWatchers.put(watchId, callbackContext);
+
+        PluginResult started = new PluginResult(PluginResult.Status.OK, new JSONObject(new HashMap<String, Object>() {{
+            put("event", "started");
+            put("watchId", watchId);
+        }}));
+        started.setKeepCallback(true);
+        callbackContext.sendPluginResult(started);
+
+        this.printerRegistry.addListener(watchId, (event, type, printer) -> {
+            boolean watched = types == null;
+            for (int i = 0; !watched && i < types.length(); i++) {
+                watched = types.optString(i).equals(type);
+            }
+            if (!watched) {
+                return;
             }
+            PluginResult result = new PluginResult(PluginResult.Status.OK, new JSONObject(new HashMap<String, Object>() {{
+                put("event", event);
+                put("type", type);
+                put("printer", printer);
+            }}));
+            result.setKeepCallback(true);
+            callbackContext.sendPluginResult(result);
+        });
+
+        if (data != null && data.optBoolean("discoverBluetooth", false)) {
+            this.printerRegistry.startBluetoothDiscovery();
         }
+        if (data != null && data.optBoolean("scanNetwork", false)) {
+            try {
+                this.printerRegistry.scanTcp(data.optString("subnet", null), data.optInt("port", 9100), data.optInt("timeout", 500), data.optInt("parallelism", 32));
+            } catch (Exception exception) {
+                PluginResult result = new PluginResult(PluginResult.Status.OK, new JSONObject(new HashMap<String, Object>() {{
+                    put("event", "error");
+                    put("error", exception.getMessage() != null ? exception.getMessage() : exception.getClass().getSimpleName());
+                }}));
+                result.setKeepCallback(true);
+                callbackContext.sendPluginResult(result);
+            }
+        }
+    }
+
+    private void unwatchPrinters(CallbackContext callbackContext, JSONObject data) throws JSONException {
+        String watchId = data.getString("watchId");
+        CallbackContext watcher = this.printerWatchers.remove(watchId);
+        if (watcher == null || !this.printerRegistry.removeListener(watchId)) {
+            callbackContext.error(new JSONObject(new HashMap<String, Object>() {{
+                put("error", "Watcher not found!");
+                put("watchId", watchId);
+            }}));
+            return;
+        }
+        watcher.success(new JSONObject(new HashMap<String, Object>() {{
+            put("event", "stopped");
+            put("watchId", watchId);
+        }}));
+        callbackContext.success();
+    }
 
-        callbackContext.success(printers);
+    private void scanNetworkPrinters(CallbackContext callbackContext, JSONObject data) throws JSONException {
+        JSONObject options = data != null ? data : new JSONObject();
+        try {
+            callbackContext.success(this.printerRegistry.scanTcp(
+                options.optString("subnet", null),
+                options.optInt("port", 9100),
+                options.optInt("timeout", 500),
+                options.optInt("parallelism", 32)
+            ));
+        } catch (Exception e) {
+            callbackContext.error(new JSONObject(new HashMap<String, Object>() {{
+                put("error", e.getMessage());
+            }}));
+        }
     }
 
     private void printFormattedText(CallbackContext callbackContext, String action, JSONObject data) throws JSONException {
-        EscPosPrinter printer = this.getPrinter(callbackContext, data);
+        DeviceConnection deviceConnection = this.getPrinterConnection(callbackContext, data);
+        if (deviceConnection == null) {
+            return;
+        }
+        String printerKey = this.getConnectionKey(data);
+        long startedAt = System.nanoTime();
         try {
-            int dotsFeedPaper = data.has("mmFeedPaper")
-                ? printer.mmToPx((float) data.getDouble("mmFeedPaper"))
-                : data.optInt("dotsFeedPaper", 20);
-            if (action.endsWith("Cut")) {
-                printer.printFormattedTextAndCut(data.getString("text"), dotsFeedPaper);
-            } else {
-                printer.printFormattedText(data.getString("text"), dotsFeedPaper);
+            byte[] bytes = this.renderFormattedText(printerKey, data, data.getString("text"), action.endsWith("Cut"));
+            this.writeToPrinter(printerKey, deviceConnection, bytes, this.getChunkSize(data));
+            this.printMetrics.addJob(printerKey);
+            this.printMetrics.record(printerKey, PrintMetrics.Stage.TOTAL, startedAt);
+            callbackContext.sendPluginResult(OK_RESULT);
+        } catch (Exception e) {
+            this.sendError(callbackContext, e.getMessage());
+        }
+    }
+
+    /**
+     * Renders the formatted text into the capture connection. Every printFormattedText call gets a
+     * new printer, because EscPosPrinterCommands skips style commands matching the style it sent
+     * last although printFormattedText starts with a printer reset (ESC @).
+     */
+    private void printFormattedText(ByteCaptureConnection captureConnection, JSONObject printerData, boolean cut, String text, JSONObject data) throws Exception {
+        EscPosPrinter printer = this.createPrinter(captureConnection, printerData);
+        int dotsFeedPaper = data.has("mmFeedPaper")
+            ? printer.mmToPx((float) data.getDouble("mmFeedPaper"))
+            : data.optInt("dotsFeedPaper", 20);
+        if (ImageCache.IMAGE_REFERENCE.matcher(text).find()) {
+            text = this.printImageReferences(captureConnection, printerData, text);
+            if (text == null) {
+                this.writeFeedAndCut(captureConnection, dotsFeedPaper, cut);
+                return;
             }
-            callbackContext.success();
+            printer = this.createPrinter(captureConnection, printerData);
+        }
+        if (cut) {
+            printer.printFormattedTextAndCut(text, dotsFeedPaper);
+        } else {
+            printer.printFormattedText(text, dotsFeedPaper);
+        }
+    }
+
+    /**
+     * Renders the formatted text to ESC/POS bytes in memory, so parsing is measured apart from the
+     * transfer to the device.
+     */
+    private byte[] renderFormattedText(String printerKey, JSONObject data, String text, boolean cut) throws Exception {
+        long startedAt = System.nanoTime();
+        ByteCaptureConnection captureConnection = new ByteCaptureConnection(4096);
+        try {
+            this.printFormattedText(captureConnection, data, cut, text, data);
+        } catch (Exception e) {
+            this.printMetrics.addFailure(printerKey, PrintMetrics.Stage.RENDER);
+            throw e;
+        }
+        this.printMetrics.record(printerKey, PrintMetrics.Stage.RENDER, startedAt);
+        return captureConnection.toByteArray();
+    }
+
+    private void writeToPrinter(String printerKey, DeviceConnection deviceConnection, byte[] bytes, int chunkSize) throws EscPosConnectionException {
+        long startedAt = System.nanoTime();
+        try {
+            ConnectionWriter.write(deviceConnection, bytes, chunkSize);
         } catch (EscPosConnectionException e) {
+            this.printMetrics.addFailure(printerKey, PrintMetrics.Stage.WRITE);
+            throw e;
+        }
+        this.printMetrics.record(printerKey, PrintMetrics.Stage.WRITE, startedAt);
+        this.printMetrics.addBytes(printerKey, bytes.length);
+    }
+
+    private String printImageReferences(ByteCaptureConnection captureConnection, JSONObject printerData, String text) throws Exception {
+        StringBuilder block = null;
+        for (String line : text.split("\n", -1)) {
+            Matcher matcher = ImageCache.IMAGE_REFERENCE.matcher(line);
+            if (!matcher.find()) {
+                block = block == null ? new StringBuilder(line) : block.append('\n').append(line);
+                continue;
+            }
+            if (block != null) {
+                this.createPrinter(captureConnection, printerData).printFormattedText(block.toString(), 0);
+                block = null;
+            }
+            byte[] raster = this.imageCache.get(matcher.group(1));
+            if (raster == null) {
+                throw new Exception("Image " + matcher.group(1) + " is not cached!");
+            }
+            String trimmedLine = line.trim();
+            byte alignment = (byte) (trimmedLine.startsWith("[C]") ? 1 : trimmedLine.startsWith("[R]") ? 2 : 0);
+            captureConnection.write(new byte[]{0x1B, 0x61, alignment});
+            captureConnection.write(raster);
+            captureConnection.write(new byte[]{0x1B, 0x61, 0x00});
+        }
+        return block != null ? block.toString() : null;
+    }
+
+    private void printBatch(CallbackContext callbackContext, JSONObject data) throws JSONException {
+        JSONArray documents = data.getJSONArray("documents");
+        DeviceConnection deviceConnection = this.getPrinterConnection(callbackContext, data);
+        if (deviceConnection == null) {
+            return;
+        }
+
+        JSONArray results = new JSONArray();
+        ArrayList<JSONObject> unsentResults = new ArrayList<>();
+        ByteCaptureConnection captureConnection = new ByteCaptureConnection(BATCH_FLUSH_SIZE);
+        String printerKey = this.getConnectionKey(data);
+        long startedAt = System.nanoTime();
+        int printed = 0;
+        int failed = 0;
+        try {
+            if (!deviceConnection.isConnected()) {
+                deviceConnection.connect();
+            }
+            for (int i = 0; i < documents.length(); i++) {
+                JSONObject document = documents.getJSONObject(i);
+                JSONObject result = new JSONObject();
+                result.put("index", i);
+                results.put(result);
+                long renderStartedAt = System.nanoTime();
+                int renderedSize = captureConnection.size();
+                try {
+                    this.printFormattedText(captureConnection, data, document.optBoolean("cut", false), document.getString("text"), document);
+                    this.printMetrics.record(printerKey, PrintMetrics.Stage.RENDER, renderStartedAt);
+                    unsentResults.add(result);
+                } catch (Exception e) {
+                    // don't print the blocks rendered before the failure
+                    captureConnection.truncate(renderedSize);
+                    this.printMetrics.addFailure(printerKey, PrintMetrics.Stage.RENDER);
+                    result.put("success", false);
+                    result.put("error", e.getMessage());
+                    failed++;
+                }
+                if (captureConnection.size() >= BATCH_FLUSH_SIZE || i == documents.length() - 1) {
+                    try {
+                        if (captureConnection.size() > 0) {
+                            this.writeToPrinter(printerKey, deviceConnection, captureConnection.toByteArray(), this.getChunkSize(data));
+                        }
+                        for (JSONObject unsentResult : unsentResults) {
+                            unsentResult.put("success", true);
+                            this.printMetrics.addJob(printerKey);
+                            printed++;
+                        }
+                    } catch (Exception e) {
+                        for (JSONObject unsentResult : unsentResults) {
+                            unsentResult.put("success", false);
+                            unsentResult.put("error", e.getMessage());
+                            failed++;
+                        }
+                    }
+                    unsentResults.clear();
+                    captureConnection.reset();
+                }
+            }
+        } catch (Exception e) {
+            this.sendError(callbackContext, e.getMessage());
+            return;
+        }
+
+        this.printMetrics.record(printerKey, PrintMetrics.Stage.TOTAL, startedAt);
+        JSONObject batchResult = new JSONObject();
+        batchResult.put("printed", printed);
+        batchResult.put("failed", failed);
+        batchResult.put("results", results);
+        callbackContext.success(batchResult);
+    }
+
+    private void registerTemplate(CallbackContext callbackContext, JSONObject data) throws JSONException {
+        String templateId = data.getString("templateId");
+        ReceiptTemplate template;
+        try {
+            template = new ReceiptTemplate(this.imageCache.expandReferences(data.getString("text")));
+        } catch (IllegalArgumentException e) {
             callbackContext.error(new JSONObject(new HashMap<String, Object>() {{
                 put("error", e.getMessage());
             }}));
-        } catch (Exception e) {
+            return;
+        }
+        this.templates.put(templateId, template);
+        JSONObject result = new JSONObject();
+        result.put("templateId", templateId);
+        result.put("placeholders", new JSONArray(template.getPlaceholders()));
+        callbackContext.success(result);
+    }
+
+    private void printTemplate(CallbackContext callbackContext, JSONObject data) throws JSONException {
+        String templateId = data.getString("templateId");
+        ReceiptTemplate template = this.templates.get(templateId);
+        if (template == null) {
             callbackContext.error(new JSONObject(new HashMap<String, Object>() {{
-                put("error", e.getMessage());
+                put("error", "Template not found!");
+                put("templateId", templateId);
             }}));
+            return;
+        }
+        DeviceConnection deviceConnection = this.getPrinterConnection(callbackContext, data);
+        if (deviceConnection == null) {
+            return;
+        }
+        String printerKey = this.getConnectionKey(data);
+        long startedAt = System.nanoTime();
+        try {
+            byte[] bytes;
+            try {
+                bytes = template.render(
+                    this.getPrinterSettingsKey(data),
+                    captureConnection -> this.createPrinter(captureConnection, data),
+                    data.optJSONObject("variables")
+                );
+            } catch (Exception e) {
+                this.printMetrics.addFailure(printerKey, PrintMetrics.Stage.RENDER);
+                throw e;
+            }
+            this.printMetrics.record(printerKey, PrintMetrics.Stage.RENDER, startedAt);
+            this.writeToPrinter(printerKey, deviceConnection, bytes, this.getChunkSize(data));
+            this.writeFeedAndCut(deviceConnection, this.getDotsFeedPaper(data), data.optBoolean("cut", false));
+            deviceConnection.send();
+            this.printMetrics.addJob(printerKey);
+            this.printMetrics.record(printerKey, PrintMetrics.Stage.TOTAL, startedAt);
+            callbackContext.sendPluginResult(OK_RESULT);
+        } catch (Exception e) {
+            this.sendError(callbackContext, e.getMessage());
+        }
+    }
+
+    private void printRawBytes(CallbackContext callbackContext, JSONObject data, byte[] bytes) throws JSONException {
+        DeviceConnection deviceConnection = this.getPrinterConnection(callbackContext, data);
+        if (deviceConnection == null) {
+            return;
+        }
+        try {
+            String printerKey = this.getConnectionKey(data);
+            long startedAt = System.nanoTime();
+            this.writeToPrinter(printerKey, deviceConnection, bytes, this.getChunkSize(data));
+            if (data.has("mmFeedPaper") || data.has("dotsFeedPaper") || data.optBoolean("cut", false)) {
+                this.writeFeedAndCut(deviceConnection, this.getDotsFeedPaper(data), data.optBoolean("cut", false));
+                deviceConnection.send();
+            }
+            this.printMetrics.addJob(printerKey);
+            this.printMetrics.record(printerKey, PrintMetrics.Stage.TOTAL, startedAt);
+            callbackContext.sendPluginResult(OK_RESULT);
+        } catch (Exception e) {
+            this.sendError(callbackContext, e.getMessage());
+        }
+    }
+
+    private void sendError(CallbackContext callbackContext, String message) {
+        JSONObject error = new JSONObject();
+        try {
+            error.put("error", message);
+        } catch (JSONException ignored) {}
+        callbackContext.error(error);
+    }
+
+    private int getDotsFeedPaper(JSONObject data) throws JSONException {
+        return data.has("mmFeedPaper")
+            ? Math.round((float) data.getDouble("mmFeedPaper") * data.optInt("printerDpi", 203) / 25.4f)
+            : data.optInt("dotsFeedPaper", 20);
+    }
+
+    private void writeFeedAndCut(DeviceConnection deviceConnection, int dotsFeedPaper, boolean cut) {
+        while (dotsFeedPaper > 0) {
+            int dots = Math.min(dotsFeedPaper, 255);
+            deviceConnection.write(new byte[]{0x1B, 0x4A, (byte) dots});
+            dotsFeedPaper -= dots;
+        }
+        if (cut) {
+            deviceConnection.write(CUT_PAPER_COMMAND);
         }
     }
 
@@ -321,23 +1391,12 @@ public class ThermalPrinterCordovaPlugin extends CordovaPlugin {
     private void disconnectPrinter(CallbackContext callbackContext, JSONObject data) throws JSONException {
         EscPosPrinter printer = this.getPrinter(callbackContext, data);
         printer.disconnectPrinter();
+        this.connectionPool.evict(this.getConnectionKey(data));
         callbackContext.success();
     }
 
-    private DeviceConnection getDevice(CallbackContext callbackContext, String type, String id, String address, int port) {
-        String hashKey = type + "-" + id;
-        if (this.connections.containsKey(hashKey)) {
-            DeviceConnection connection = this.connections.get(hashKey);
-            if (connection != null) {
-                if (connection.isConnected()) {
-                    return connection;
-                } else {
-                    this.connections.remove(hashKey);
-                }
-            }
-        }
-
-        if (type.equals("bluetooth")) {
+    private void registerTransports() {
+        this.transportRegistry.register("bluetooth", (callbackContext, data) -> {
             if (!this.checkBluetooth(callbackContext)) {
                 return null;
             }
@@ -347,90 +1406,231 @@ public class ThermalPrinterCordovaPlugin extends CordovaPlugin {
             //     }}));
             //     return null;
             // }
-            if (id.equals("first")) {
-                return BluetoothPrintersConnections.selectFirstPaired();
-            }
-            BluetoothConnections printerConnections = new BluetoothConnections();
-            for (BluetoothConnection bluetoothConnection : printerConnections.getList()) {
-                BluetoothDevice bluetoothDevice = bluetoothConnection.getDevice();
-                try { if (bluetoothDevice.getAddress().equals(id)) { return bluetoothConnection; } } catch (Exception ignored) {}
-                try { if (bluetoothDevice.getName().equals(id)) { return bluetoothConnection; } } catch (Exception ignored) {}
+            String id = data.optString("id");
+            DeviceConnection connection = id.equals("first")
+                ? BluetoothPrintersConnections.selectFirstPaired()
+                : this.printerRegistry.find("bluetooth", id);
+            return connection instanceof BluetoothConnection
+                ? new BluetoothDeviceConnection(((BluetoothConnection) connection).getDevice())
+                : connection;
+        }, this.preferences.getInteger("ThermalPrinterBluetoothChunkSize", 2048));
+        this.transportRegistry.register("tcp", new TransportRegistry.Transport() {
+            @Override
+            public DeviceConnection open(CallbackContext callbackContext, JSONObject data) {
+                return new TcpDeviceConnection(
+                    data.optString("address"),
+                    data.optInt("port", 9100),
+                    data.optInt("connectTimeout", 5000),
+                    data.optInt("readTimeout", 5000)
+                );
             }
-        } else if (type.equals("tcp")) {
-            return new TcpConnection(address, port);
-        } else {
-            UsbConnections printerConnections = new UsbConnections(this.cordova.getActivity());
-            for (UsbConnection usbConnection : printerConnections.getList()) {
-                UsbDevice usbDevice = usbConnection.getDevice();
-                try { if (usbDevice.getDeviceId() == Integer.parseInt(id)) { return usbConnection; } } catch (Exception ignored) {}
-                try { if (Objects.requireNonNull(usbDevice.getProductName()).trim().equals(id)) { return usbConnection; } } catch (Exception ignored) {}
+
+            @Override
+            public String getConnectionId(JSONObject data) {
+                return data.optString("address") + ":" + data.optInt("port", 9100);
             }
-        }
+        }, this.preferences.getInteger("ThermalPrinterTcpChunkSize", 16 * 1024));
+        this.transportRegistry.register(
+            "usb",
+            (callbackContext, data) -> this.printerRegistry.find("usb", data.optString("id")),
+            this.preferences.getInteger("ThermalPrinterUsbChunkSize", 4096)
+        );
+        this.transportRegistry.register("virtual", (callbackContext, data) -> {
+            String id = data.optString("id", "default");
+            VirtualDeviceConnection virtualPrinter = this.virtualPrinters.computeIfAbsent(id, VirtualDeviceConnection::new);
+            String file = data.optString("file", "");
+            virtualPrinter.configure(data, file.isEmpty() ? null : new File(
+                new File(this.cordova.getActivity().getCacheDir(), "thermal-printer-virtual"),
+                new File(file).getName()
+            ));
+            return virtualPrinter;
+        });
+    }
 
-        return null;
+    private int getChunkSize(JSONObject data) {
+        return data.optInt("chunkSize", this.transportRegistry.getChunkSize(data.optString("type")));
     }
 
-    private EscPosPrinter getPrinter(CallbackContext callbackContext, JSONObject data) throws JSONException {
+    private DeviceConnection getDevice(CallbackContext callbackContext, JSONObject data) {
+        String type = data.optString("type");
+        TransportRegistry.Transport transport = this.transportRegistry.get(type);
+        if (transport == null) {
+            callbackContext.error(new JSONObject(new HashMap<String, Object>() {{
+                put("error", "Printer type not supported!");
+                put("type", type);
+            }}));
+            return null;
+        }
+        return transport.open(callbackContext, data);
+    }
+
+    private void getPrinterStatus(CallbackContext callbackContext, JSONObject data) throws JSONException {
         DeviceConnection deviceConnection = this.getPrinterConnection(callbackContext, data);
         if (deviceConnection == null) {
-            throw new JSONException("Device not found");
+            return;
+        }
+        if (!(deviceConnection instanceof StatusConnection)) {
+            callbackContext.error(new JSONObject(new HashMap<String, Object>() {{
+                put("error", "Printer status is not supported for this printer type!");
+                put("type", data.optString("type"));
+            }}));
+            return;
         }
-
-        EscPosCharsetEncoding charsetEncoding = null;
         try {
-            if (data.optJSONObject("charsetEncoding") != null) {
-                JSONObject charsetEncodingData = data.optJSONObject("charsetEncoding");
-                if (charsetEncodingData == null) {
-                    charsetEncodingData = new JSONObject();
-                }
-                charsetEncoding = new EscPosCharsetEncoding(
-                    charsetEncodingData.optString("charsetName", "windows-1252"),
-                    charsetEncodingData.optInt("charsetId", 16)
-                );
-            }
-        } catch (Exception exception) {
+            callbackContext.success(PrinterStatus.query((StatusConnection) deviceConnection, data.optInt("timeout", 1000)));
+        } catch (EscPosConnectionException e) {
+            this.connectionPool.evict(this.getConnectionKey(data));
             callbackContext.error(new JSONObject(new HashMap<String, Object>() {{
-                put("error", exception.getMessage());
+                put("error", e.getMessage());
             }}));
-            throw new JSONException(exception.getMessage());
         }
+    }
 
+    private void getVirtualOutput(CallbackContext callbackContext, JSONObject data) throws JSONException {
+        String id = data.optString("id", "default");
+        VirtualDeviceConnection virtualPrinter = this.virtualPrinters.get(id);
+        if (virtualPrinter == null) {
+            callbackContext.error(new JSONObject(new HashMap<String, Object>() {{
+                put("error", "Virtual printer not found!");
+                put("id", id);
+            }}));
+            return;
+        }
+        byte[] bytes = virtualPrinter.getOutput(data.optBoolean("clear", false));
+        if (data.optBoolean("binary", false)) {
+            callbackContext.sendPluginResult(new PluginResult(PluginResult.Status.OK, bytes));
+            return;
+        }
+        JSONObject output = virtualPrinter.toJSON();
+        output.put("base64", Base64.encodeToString(bytes, Base64.NO_WRAP));
+        callbackContext.success(output);
+    }
+
+    private void startVirtualServer(CallbackContext callbackContext, JSONObject data) throws JSONException {
+        JSONObject options = data != null ? data : new JSONObject();
+        TcpSinkServer server = new TcpSinkServer(options.optInt("latencyMs", 0), options.optLong("bytesPerSecond", 0));
         try {
-            return new EscPosPrinter(
-                deviceConnection,
-                data.optInt("printerDpi", 203),
-                (float) data.optDouble("printerWidthMM", 48f),
-                data.optInt("printerNbrCharactersPerLine", 32),
-                charsetEncoding
-            );
-        } catch (Exception e) {
+            int port = server.start(options.optInt("port", 0));
+            TcpSinkServer previous = this.virtualServers.put(port, server);
+            if (previous != null) {
+                previous.stop();
+            }
+            callbackContext.success(server.toJSON());
+        } catch (IOException e) {
             callbackContext.error(new JSONObject(new HashMap<String, Object>() {{
                 put("error", e.getMessage());
             }}));
+        }
+    }
+
+    private void stopVirtualServer(CallbackContext callbackContext, JSONObject data) throws JSONException {
+        int port = data.getInt("port");
+        TcpSinkServer server = this.virtualServers.remove(port);
+        if (server == null) {
+            callbackContext.error(new JSONObject(new HashMap<String, Object>() {{
+                put("error", "Virtual server not found!");
+                put("port", port);
+            }}));
+            return;
+        }
+        server.stop();
+        callbackContext.success(server.toJSON());
+    }
+
+    private EscPosPrinter getPrinter(CallbackContext callbackContext, JSONObject data) throws JSONException {
+        return this.getPrinter(callbackContext, data, this.getPrinterConnection(callbackContext, data));
+    }
+
+    private EscPosPrinter getPrinter(CallbackContext callbackContext, JSONObject data, DeviceConnection deviceConnection) throws JSONException {
+        if (deviceConnection == null) {
+            throw new JSONException("Device not found");
+        }
+
+        String connectionKey = this.getConnectionKey(data);
+        long startedAt = System.nanoTime();
+        try {
+            EscPosPrinter printer = this.createPrinter(deviceConnection, data);
+            this.printMetrics.record(connectionKey, PrintMetrics.Stage.PRINTER, startedAt);
+            return printer;
+        } catch (Exception e) {
+            this.printMetrics.addFailure(connectionKey, PrintMetrics.Stage.PRINTER);
+            this.sendError(callbackContext, e.getMessage());
             throw new JSONException(e.getMessage());
         }
     }
 
+    private String getPrinterSettingsKey(JSONObject data) {
+        JSONObject charsetEncodingData = data.optJSONObject("charsetEncoding");
+        return data.optInt("printerDpi", 203)
+            + "|" + data.optDouble("printerWidthMM", 48f)
+            + "|" + data.optInt("printerNbrCharactersPerLine", 32)
+            + (charsetEncodingData != null ? "|" + charsetEncodingData.optString("charsetName", "windows-1252") + "|" + charsetEncodingData.optInt("charsetId", 16) : "");
+    }
+
+    /**
+     * Creates a new printer for every print, only the charset encoding is shared (see PrinterCache).
+     */
+    private EscPosPrinter createPrinter(DeviceConnection deviceConnection, JSONObject data) throws Exception {
+        return new EscPosPrinter(
+            deviceConnection,
+            data.optInt("printerDpi", 203),
+            (float) data.optDouble("printerWidthMM", 48f),
+            data.optInt("printerNbrCharactersPerLine", 32),
+            this.printerCache.getCharsetEncoding(data.optJSONObject("charsetEncoding"))
+        );
+    }
+
+    private String getConnectionKey(JSONObject data) throws JSONException {
+        String type = data.getString("type");
+        TransportRegistry.Transport transport = this.transportRegistry.get(type);
+        return type + "-" + (transport != null ? transport.getConnectionId(data) : data.optString("id"));
+    }
+
+    private String getMetricsKey(JSONObject data) throws JSONException {
+        return data.has("type") ? this.getConnectionKey(data) : "none";
+    }
+
     private DeviceConnection getPrinterConnection(CallbackContext callbackContext, JSONObject data) throws JSONException {
+        return this.getPrinterConnection(callbackContext, data, true);
+    }
+
+    private DeviceConnection getPrinterConnection(CallbackContext callbackContext, JSONObject data, boolean connect) throws JSONException {
         String type = data.getString("type");
-        String id = data.getString("id");
-        String hashKey = type + "-" + id;
-        DeviceConnection deviceConnection = this.getDevice(
-            callbackContext,
-            data.getString("type"),
-            data.optString("id"),
-            data.optString("address"),
-            data.optInt("port", 9100)
-        );
+        String id = data.optString("id");
+        String connectionKey = this.getConnectionKey(data);
+        DeviceConnection deviceConnection = this.connectionPool.acquire(connectionKey, () -> {
+            long startedAt = System.nanoTime();
+            DeviceConnection device = this.getDevice(callbackContext, data);
+            this.printMetrics.record(connectionKey, PrintMetrics.Stage.LOOKUP, startedAt);
+            return device;
+        });
         if (deviceConnection == null) {
+            this.printMetrics.addFailure(connectionKey, PrintMetrics.Stage.LOOKUP);
             callbackContext.error(new JSONObject(new HashMap<String, Object>() {{
                 put("error", "Device not found or not connected!");
                 put("type", type);
                 put("id", id);
             }}));
+            return null;
+        }
+        if (deviceConnection instanceof StatusConnection) {
+            boolean flowControl = data.optBoolean("flowControl", this.preferences.getBoolean("ThermalPrinterFlowControl", false));
+            ((StatusConnection) deviceConnection).setReadyTimeout(flowControl ? data.optInt("readyTimeout", 10000) : 0);
         }
-        if (!this.connections.containsKey(hashKey)) {
-            this.connections.put(hashKey, deviceConnection);
+        if (connect && !deviceConnection.isConnected()) {
+            long startedAt = System.nanoTime();
+            try {
+                deviceConnection.connect();
+            } catch (EscPosConnectionException e) {
+                this.printMetrics.addFailure(connectionKey, PrintMetrics.Stage.CONNECT);
+                callbackContext.error(new JSONObject(new HashMap<String, Object>() {{
+                    put("error", e.getMessage());
+                    put("type", type);
+                    put("id", id);
+                }}));
+                return null;
+            }
+            this.printMetrics.record(connectionKey, PrintMetrics.Stage.CONNECT, startedAt);
         }
         return deviceConnection;
     }
@@ -0,0 +1,65 @@
+package de.paystory.thermal_printer;
+
+import com.dantsu.escposprinter.connection.DeviceConnection;
+
+import org.apache.cordova.CallbackContext;
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Transports by printer type ("bluetooth", "tcp", "usb", "virtual", ...). A transport knows how a
+ * printer of its type is identified and how a connection to it is opened, so new types can be
+ * added without touching the print path.
+ */
+public class TransportRegistry {
+    public interface Transport {
+        /**
+         * Opens the connection to the printer, or reports the error to the callback and returns null.
+         */
+        DeviceConnection open(CallbackContext callbackContext, JSONObject data);
+
+        /**
+         * ID of the printer within its type, used for the connection and queue keys.
+         */
+        default String getConnectionId(JSONObject data) {
+            return data.optString("id");
+        }
+    }
+
+    private final ConcurrentHashMap<String, Transport> transports = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, Integer> chunkSizes = new ConcurrentHashMap<>();
+
+    public void register(String type, Transport transport) {
+        this.register(type, transport, ConnectionWriter.DEFAULT_CHUNK_SIZE);
+    }
+
+    /**
+     * Registers the transport with the chunk size the data is written in when the print call
+     * doesn't set one, e.g. small chunks for Bluetooth printers with a small receive buffer.
+     */
+    public void register(String type, Transport transport, int chunkSize) {
+        this.transports.put(type, transport);
+        this.chunkSizes.put(type, chunkSize > 0 ? chunkSize : ConnectionWriter.DEFAULT_CHUNK_SIZE);
+    }
+
+    public void unregister(String type) {
+        this.transports.remove(type);
+        this.chunkSizes.remove(type);
+    }
+
+    public int getChunkSize(String type) {
+        Integer chunkSize = this.chunkSizes.get(type);
+        return chunkSize != null ? chunkSize : ConnectionWriter.DEFAULT_CHUNK_SIZE;
+    }
+
+    public Transport get(String type) {
+        return this.transports.get(type);
+    }
+
+    public List<String> getTypes() {
+        return new ArrayList<>(this.transports.keySet());
+    }
+}
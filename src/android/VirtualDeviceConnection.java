@@ -0,0 +1,203 @@
+package de.paystory.thermal_printer;
+
+import com.dantsu.escposprinter.connection.DeviceConnection;
+import com.dantsu.escposprinter.exceptions.EscPosConnectionException;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+/**
+ * Printer without hardware. The written bytes are captured in memory or appended to a file, and the
+ * connect latency, the latency of every write and the throughput of a real printer can be
+ * simulated, so the print path can be load tested without devices.
+ */
+public class VirtualDeviceConnection extends DeviceConnection implements DirectWriteConnection, StatusConnection {
+    private final String id;
+    private final ByteArrayOutputStream memory = new ByteArrayOutputStream();
+    private volatile File file;
+    private volatile int maxBytes = 1024 * 1024;
+    private volatile int connectLatencyMs;
+    private volatile int latencyMs;
+    private volatile long bytesPerSecond;
+    private volatile int readyTimeoutMs;
+    private FileOutputStream fileStream;
+    private boolean connected = false;
+    private long bytes;
+    private long writes;
+    private long droppedBytes;
+
+    public VirtualDeviceConnection(String id) {
+        super();
+        this.id = id;
+    }
+
+    public String getId() {
+        return this.id;
+    }
+
+    /**
+     * Applies the simulation settings (connectLatencyMs, latencyMs, bytesPerSecond, maxBytes) of the
+     * printer data. The output file is changed on the next connect.
+     */
+    public void configure(JSONObject data, File file) {
+        this.connectLatencyMs = Math.max(0, data.optInt("connectLatencyMs", 0));
+        this.latencyMs = Math.max(0, data.optInt("latencyMs", 0));
+        this.bytesPerSecond = Math.max(0, data.optLong("bytesPerSecond", 0));
+        this.maxBytes = Math.max(0, data.optInt("maxBytes", 1024 * 1024));
+        this.file = file;
+    }
+
+    @Override
+    public synchronized boolean isConnected() {
+        return this.connected;
+    }
+
+    @Override
+    public synchronized VirtualDeviceConnection connect() throws EscPosConnectionException {
+        if (this.connected) {
+            return this;
+        }
+        this.sleep(this.connectLatencyMs * 1000000L);
+        File file = this.file;
+        if (file != null) {
+            try {
+                File parent = file.getParentFile();
+                if (parent != null && !parent.exists() && !parent.mkdirs()) {
+                    throw new IOException("Unable to create " + parent);
+                }
+                this.fileStream = new FileOutputStream(file, true);
+            } catch (IOException e) {
+                throw new EscPosConnectionException("Unable to open virtual printer file " + file + ".");
+            }
+        }
+        this.data = new byte[0];
+        this.connected = true;
+        return this;
+    }
+
+    @Override
+    public synchronized VirtualDeviceConnection disconnect() {
+        this.data = new byte[0];
+        this.connected = false;
+        if (this.fileStream != null) {
+            try {
+                this.fileStream.close();
+            } catch (IOException ignored) {}
+            this.fileStream = null;
+        }
+        return this;
+    }
+
+    @Override
+    public synchronized void write(byte[] bytes) {
+        byte[] data = new byte[this.data.length + bytes.length];
+        System.arraycopy(this.data, 0, data, 0, this.data.length);
+        System.arraycopy(bytes, 0, data, this.data.length, bytes.length);
+        this.data = data;
+    }
+
+    @Override
+    public synchronized void send(int addWaitingTime) throws EscPosConnectionException {
+        byte[] data = this.data;
+        this.data = new byte[0];
+        this.deliver(data, 0, data.length);
+        this.sleep(addWaitingTime * 1000000L);
+    }
+
+    @Override
+    public synchronized void writeDirect(byte[] bytes, int offset, int length) throws EscPosConnectionException {
+        if (this.data.length > 0) {
+            this.send(0);
+        }
+        this.deliver(bytes, offset, length);
+    }
+
+    /**
+     * Answers like a printer which is online, has paper and an empty buffer, after the simulated
+     * write latency.
+     */
+    @Override
+    public synchronized int requestStatus(byte[] command, int timeoutMs) throws EscPosConnectionException {
+        if (!this.connected) {
+            throw new EscPosConnectionException("Unable to send data to device.");
+        }
+        this.sleep(this.latencyMs * 1000000L);
+        return command.length > 0 && command[0] == 0x1D ? 0x00 : 0x12;
+    }
+
+    @Override
+    public void setReadyTimeout(int readyTimeoutMs) {
+        this.readyTimeoutMs = Math.max(0, readyTimeoutMs);
+    }
+
+    /**
+     * Returns the captured bytes, optionally clearing them.
+     */
+    public synchronized byte[] getOutput(boolean clear) {
+        byte[] output = this.memory.toByteArray();
+        if (clear) {
+            this.memory.reset();
+            this.droppedBytes = 0;
+        }
+        return output;
+    }
+
+    public synchronized JSONObject toJSON() throws JSONException {
+        JSONObject stats = new JSONObject();
+        stats.put("id", this.id);
+        stats.put("connected", this.connected);
+        stats.put("bytes", this.bytes);
+        stats.put("writes", this.writes);
+        stats.put("capturedBytes", this.memory.size());
+        stats.put("droppedBytes", this.droppedBytes);
+        if (this.file != null) {
+            stats.put("file", this.file.getAbsolutePath());
+        }
+        return stats;
+    }
+
+    private void deliver(byte[] bytes, int offset, int length) throws EscPosConnectionException {
+        if (!this.connected) {
+            throw new EscPosConnectionException("Unable to send data to device.");
+        }
+        if (length == 0) {
+            return;
+        }
+        long bytesPerSecond = this.bytesPerSecond;
+        this.sleep(this.latencyMs * 1000000L + (bytesPerSecond > 0 ? length * 1000000000L / bytesPerSecond : 0));
+
+        this.bytes += length;
+        this.writes++;
+        int capture = Math.max(0, Math.min(length, this.maxBytes - this.memory.size()));
+        this.memory.write(bytes, offset, capture);
+        this.droppedBytes += length - capture;
+        if (this.fileStream != null) {
+            try {
+                this.fileStream.write(bytes, offset, length);
+            } catch (IOException e) {
+                this.disconnect();
+                throw new EscPosConnectionException(e.getMessage());
+            }
+        }
+        if (this.readyTimeoutMs > 0) {
+            PrinterStatus.waitUntilReady(this, this.readyTimeoutMs);
+        }
+    }
+
+    private void sleep(long nanos) throws EscPosConnectionException {
+        if (nanos <= 0) {
+            return;
+        }
+        try {
+            Thread.sleep(nanos / 1000000L, (int) (nanos % 1000000L));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new EscPosConnectionException(e.getMessage());
+        }
+    }
+}
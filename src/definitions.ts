@@ -12,13 +12,51 @@ export interface Printer {
     deviceId?: number;
     serialNumber?: string;
     vendorId?: number;
+
+    // TCP
+    port?: number;
+}
+
+export interface WatchPrinters {
+    types?: ('bluetooth' | 'tcp' | 'usb')[];
+    discoverBluetooth?: boolean;
+    scanNetwork?: boolean;
+    subnet?: string;
+    port?: number;
+    timeout?: number;
+    parallelism?: number;
+}
+
+export interface PrinterEvent {
+    event: 'started' | 'found' | 'lost' | 'stopped' | 'error';
+    watchId?: string;
+    error?: string;
+    type?: 'bluetooth' | 'tcp' | 'usb';
+    printer?: Printer & { ids: string[] };
+}
+
+export interface ScanNetworkPrinters {
+    subnet?: string;
+    port?: number;
+    timeout?: number;
+    parallelism?: number;
 }
 
 export interface PrinterToUse {
-    type: 'bluetooth' | 'tcp' | 'usb';
-    id: string | number;
+    printerId?: string; // ID returned by configurePrinter, replaces all other printer settings
+    type?: 'bluetooth' | 'tcp' | 'usb' | 'virtual';
+    id?: string | number;
     address?: string;
     port?: number;
+    connectTimeout?: number;
+    readTimeout?: number;
+    file?: string; // Virtual printer: also append the output to this file in the cache directory
+    connectLatencyMs?: number; // Virtual printer: simulated connect time
+    latencyMs?: number; // Virtual printer: simulated latency of every write
+    bytesPerSecond?: number; // Virtual printer: simulated throughput
+    maxBytes?: number; // Virtual printer: maximum of captured bytes kept in memory (default 1 MB)
+    flowControl?: boolean; // Wait for the printer after every chunk (Bluetooth, TCP, virtual)
+    readyTimeout?: number; // Milliseconds to wait for the printer with flowControl (default 10000)
     mmFeedPaper?: number;
     dotsFeedPaper?: number;
     printerDpi?: number;
@@ -30,12 +68,278 @@ export interface PrinterToUse {
     };
 }
 
+export interface PrinterStatus {
+    responded: boolean;
+    online?: boolean;
+    coverOpen?: boolean;
+    paperFeeding?: boolean;
+    paperOut?: boolean;
+    paperNearEnd?: boolean;
+    error?: boolean;
+    mechanicalError?: boolean;
+    cutterError?: boolean;
+    unrecoverableError?: boolean;
+    recoverableError?: boolean;
+    bufferReady?: boolean;
+}
+
+export interface VirtualOutput {
+    id: string;
+    connected: boolean;
+    bytes: number;
+    writes: number;
+    capturedBytes: number;
+    droppedBytes: number;
+    file?: string;
+    base64: string;
+}
+
+export interface StartVirtualServer {
+    port?: number;
+    latencyMs?: number;
+    bytesPerSecond?: number;
+}
+
+export interface VirtualServer {
+    address: string;
+    port: number;
+    running: boolean;
+    connections: number;
+    activeConnections: number;
+    bytes: number;
+    statusRequests: number;
+}
+
 export interface PrintFormattedText extends PrinterToUse {
     text: string;
 }
 
+export interface BatchDocument {
+    text: string;
+    cut?: boolean;
+    mmFeedPaper?: number;
+    dotsFeedPaper?: number;
+}
+
+export interface PrintBatch extends PrinterToUse {
+    documents: BatchDocument[];
+}
+
+export interface PrintBatchResult {
+    printed: number;
+    failed: number;
+    results: {
+        index: number;
+        success: boolean;
+        error?: string;
+    }[];
+}
+
+export interface RegisterTemplate {
+    templateId: string;
+    text: string;
+}
+
+export interface RegisterTemplateResult {
+    templateId: string;
+    placeholders: string[];
+}
+
+export interface PrintTemplate extends PrinterToUse {
+    templateId: string;
+    variables?: { [name: string]: string | number };
+    cut?: boolean;
+}
+
+export interface PrintRawBytes extends PrinterToUse {
+    bytes?: ArrayBuffer | Uint8Array;
+    base64?: string;
+    chunkSize?: number;
+    cut?: boolean;
+}
+
+export interface EnqueuePrint extends PrintFormattedText {
+    cut?: boolean;
+}
+
+export interface SpoolPrint extends EnqueuePrint {
+    jobId?: string;
+    maxAttempts?: number;
+}
+
+export interface SpoolPrintResult {
+    jobId: string;
+    duplicate: boolean;
+}
+
+export interface SpooledJob {
+    jobId: string;
+    printerKey: string;
+    createdAt: number;
+    attempts: number;
+    maxAttempts?: number;
+    nextAttemptAt?: number;
+    lastError?: string;
+}
+
+export interface GroupTarget extends PrinterToUse {
+    text?: string; // Replaces the text of the group call for this printer
+    cut?: boolean;
+}
+
+export interface ConfigureGroup {
+    groupId: string;
+    printers: GroupTarget[];
+}
+
+export interface PrintToGroup {
+    groupId?: string; // ID of a group registered with configureGroup
+    printers?: GroupTarget[]; // Printers of the group, replaces groupId
+    text: string;
+    cut?: boolean;
+    mmFeedPaper?: number;
+    dotsFeedPaper?: number;
+    chunkSize?: number;
+    // Printer settings for all printers which don't define them themselves or in their profile
+    printerDpi?: number;
+    printerWidthMM?: number;
+    printerNbrCharactersPerLine?: number;
+    charsetEncoding?: {
+        charsetName: string,
+        charsetId: number
+    };
+}
+
+export interface PrintToGroupResult {
+    printed: number;
+    failed: number;
+    durationMs: number;
+    results: {
+        index: number;
+        printerKey?: string;
+        printerId?: string;
+        success: boolean;
+        queuedMs?: number;
+        durationMs?: number;
+        error?: string;
+    }[];
+}
+
+export interface WarmUpResult {
+    printerKey: string;
+    connected: boolean;
+    durationMs: number;
+    error?: string;
+}
+
+export interface PrintJob {
+    jobId: string;
+    printer: string;
+    status: 'queued' | 'printing' | 'done' | 'failed';
+    position?: number;
+    queuedAt: number;
+    startedAt?: number;
+    finishedAt?: number;
+    error?: string;
+}
+
+export interface PrintQueueStatus {
+    printers: {
+        printer: string;
+        pending: number;
+        activeJobId: string | null;
+        completed: number;
+        failed: number;
+    }[];
+    jobs: PrintJob[];
+}
+
+export interface ConnectionStats {
+    open: number;
+    maxConnections: number;
+    idleTimeoutMs: number;
+    keepAliveIntervalMs: number;
+    hits: number;
+    misses: number;
+    reconnects: number;
+    evictions: number;
+    connections: {
+        key: string;
+        connected: boolean;
+        uses: number;
+        ageMs: number;
+        idleMs: number;
+    }[];
+}
+
+export interface StageMetrics {
+    count: number;
+    meanMs: number;
+    p50Ms: number;
+    p95Ms: number;
+    p99Ms: number;
+    maxMs: number;
+}
+
+export interface PrinterMetrics {
+    jobs: number;
+    bytes: number;
+    reconnects: number;
+    failures: number;
+    failuresByStage: { [stage: string]: number };
+    stages: {
+        lookup?: StageMetrics;
+        connect?: StageMetrics;
+        printer?: StageMetrics;
+        render?: StageMetrics;
+        image?: StageMetrics;
+        write?: StageMetrics;
+        total?: StageMetrics;
+    };
+}
+
+export interface Metrics {
+    since: number;
+    now: number;
+    printers: { [printerKey: string]: PrinterMetrics };
+}
+
 export interface BitmapToHexadecimalString extends PrinterToUse {
-    base64: string;
+    bytes?: ArrayBuffer | Uint8Array;
+    base64?: string;
+    binary?: boolean;
+}
+
+export interface PrintImage extends PrinterToUse {
+    bytes?: ArrayBuffer | Uint8Array;
+    base64?: string;
+    align?: 'left' | 'center' | 'right';
+    dither?: boolean;
+    bandHeight?: number;
+    cut?: boolean;
+}
+
+export interface CacheImage {
+    bytes?: ArrayBuffer | Uint8Array;
+    base64?: string;
+    printerDpi?: number;
+    printerWidthMM?: number;
+}
+
+export interface CacheImageResult {
+    ref: string;
+    size: number;
+}
+
+export interface ImageCacheStats {
+    entries: number;
+    bytes: number;
+    maxBytes: number;
+    hits: number;
+    misses: number;
+    persistent: boolean;
+    diskBytes?: number;
+    maxDiskBytes?: number;
 }
 
 export interface RequestPermissionsResult {
@@ -60,11 +364,90 @@ export interface ThermalPrinterPlugin {
    * List available printers
    *
    * @param {Object} data - Data object
-   * @param {"bluetooth"|"usb"} data.type - Type of list: bluetooth or usb
+   * @param {"bluetooth"|"tcp"|"usb"|"virtual"} data.type - Type of list: bluetooth, usb, tcp (printers found by scanNetworkPrinters) or virtual
+   * @param {function} success
+   * @param {function} error
+   */
+  listPrinters(data: { type: 'bluetooth' | 'tcp' | 'usb' | 'virtual'; }, success: (value: Printer[]) => any, error: (value: ErrorResult) => void): void;
+
+  /**
+   * Watch for printers found or lost in the background (paired and discovered Bluetooth devices,
+   * attached USB devices and network printers). The success callback is called multiple times:
+   * first with the event "started" and the watchId, then with a "found" event for every known
+   * printer and afterwards with a "found" or "lost" event for every change. A failed network scan
+   * is reported with an "error" event; the watcher keeps running.
+   *
+   * @param {Object} [data] - Data object
+   * @param {Array<"bluetooth"|"tcp"|"usb">} [data.types] - Only report printers of these types (default all)
+   * @param {boolean} [data.discoverBluetooth] - Start a Bluetooth discovery for unpaired printers
+   * @param {boolean} [data.scanNetwork] - Scan the local network for printers (see scanNetworkPrinters)
+   * @param {string} [data.subnet] - Subnet to scan in CIDR notation (default the /24 network of the device)
+   * @param {number} [data.port] - Port to probe (default 9100)
+   * @param {number} [data.timeout] - Connect timeout per host in ms (default 500)
+   * @param {number} [data.parallelism] - Number of hosts probed at once (default 32)
+   * @param {function} success
+   * @param {function} error
+   */
+  watchPrinters(data: WatchPrinters | null, success: (value: PrinterEvent) => void, error: (value: ErrorResult) => void): void;
+
+  /**
+   * Stop watching for printers
+   *
+   * @param {Object} data - Data object
+   * @param {string} data.watchId - ID returned by watchPrinters
+   * @param {function} success
+   * @param {function} error
+   */
+  unwatchPrinters(data: { watchId: string; }, success: () => void, error: (value: ErrorResult) => void): void;
+
+  /**
+   * Scan the local network for printers by probing every host of the subnet on the printer port.
+   * Only a limited number of hosts is probed at once.
+   *
+   * @param {Object} [data] - Data object
+   * @param {string} [data.subnet] - Subnet to scan in CIDR notation, prefix length 22 to 30 (default the /24 network of the device)
+   * @param {number} [data.port] - Port to probe (default 9100)
+   * @param {number} [data.timeout] - Connect timeout per host in ms (default 500)
+   * @param {number} [data.parallelism] - Number of hosts probed at once (default 32)
+   * @param {function} success
+   * @param {function} error
+   */
+  scanNetworkPrinters(data: ScanNetworkPrinters | null, success: (value: Printer[]) => void, error: (value: ErrorResult) => void): void;
+
+  /**
+   * Get the bytes captured by a virtual printer (type "virtual")
+   *
+   * @param {Object} data - Data object
+   * @param {string} [data.id] - ID of the virtual printer (default "default")
+   * @param {boolean} [data.clear] - Clear the captured bytes
+   * @param {boolean} [data.binary] - Return only the captured bytes as ArrayBuffer
    * @param {function} success
    * @param {function} error
    */
-  listPrinters(data: { type: 'bluetooth' | 'usb'; }, success: (value: Printer[]) => any, error: (value: ErrorResult) => void): void;
+  getVirtualOutput(data: { id?: string; clear?: boolean; binary?: boolean; }, success: (value: VirtualOutput | ArrayBuffer) => void, error: (value: ErrorResult) => void): void;
+
+  /**
+   * Start a local TCP server on 127.0.0.1 which accepts print data like a network printer and
+   * discards it. Print to it with type "tcp", address "127.0.0.1" and the returned port.
+   *
+   * @param {Object} [data] - Data object
+   * @param {number} [data.port] - Port to listen on (default a free port)
+   * @param {number} [data.latencyMs] - Delay before a status request is answered
+   * @param {number} [data.bytesPerSecond] - Limit of the read throughput (default unlimited)
+   * @param {function} success
+   * @param {function} error
+   */
+  startVirtualServer(data: StartVirtualServer | null, success: (value: VirtualServer) => void, error: (value: ErrorResult) => void): void;
+
+  /**
+   * Stop a TCP server started with startVirtualServer
+   *
+   * @param {Object} data - Data object
+   * @param {number} data.port - Port of the server
+   * @param {function} success
+   * @param {function} error
+   */
+  stopVirtualServer(data: { port: number; }, success: (value: VirtualServer) => void, error: (value: ErrorResult) => void): void;
 
   /**
    * Print a formatted text and feed paper
@@ -100,6 +483,240 @@ export interface ThermalPrinterPlugin {
    */
   printFormattedTextAndCut(data: PrintFormattedText, success: () => void, error: (value: ErrorResult) => void): void;
 
+  /**
+   * Print several formatted texts over one connection in a single call
+   * @see https://github.com/DantSu/ESCPOS-ThermalPrinter-Android#formatted-text--syntax-guide
+   *
+   * @param {Object[]} data - Data object
+   * @param {"bluetooth"|"tcp"|"usb"} data.type - List all bluetooth or usb printers
+   * @param {string|number} [data.id] - ID of printer to find (Bluetooth: address, TCP: Use address + port instead, USB: deviceId)
+   * @param {string} [data.address] - If type is "tcp" then the IP Address of the printer
+   * @param {number} [data.port] - If type is "tcp" then the Port of the printer
+   * @param {Object[]} data.documents - Documents to be printed
+   * @param {string} data.documents[].text - Formatted text to be printed
+   * @param {boolean} [data.documents[].cut] - Cut the paper after the document
+   * @param {number} [data.documents[].mmFeedPaper] - Millimeter distance feed paper at the end of the document
+   * @param {number} [data.documents[].dotsFeedPaper] - Distance feed paper at the end of the document
+   * @param {function} success
+   * @param {function} error
+   */
+  printBatch(data: PrintBatch, success: (value: PrintBatchResult) => void, error: (value: ErrorResult) => void): void;
+
+  /**
+   * Register a formatted text with {{placeholders}} as template. The lines without placeholders are
+   * converted only once per printer configuration.
+   * @see https://github.com/DantSu/ESCPOS-ThermalPrinter-Android#formatted-text--syntax-guide
+   *
+   * @param {Object} data - Data object
+   * @param {string} data.templateId - Name of the template
+   * @param {string} data.text - Formatted text with placeholders i. e. "[L]Total[R]{{total}}"
+   * @param {function} success
+   * @param {function} error
+   */
+  registerTemplate(data: RegisterTemplate, success: (value: RegisterTemplateResult) => void, error: (value: ErrorResult) => void): void;
+
+  /**
+   * Print a registered template, the placeholders are replaced by the given variables
+   *
+   * @param {Object[]} data - Data object
+   * @param {"bluetooth"|"tcp"|"usb"} data.type - List all bluetooth or usb printers
+   * @param {string|number} [data.id] - ID of printer to find (Bluetooth: address, TCP: Use address + port instead, USB: deviceId)
+   * @param {string} [data.address] - If type is "tcp" then the IP Address of the printer
+   * @param {number} [data.port] - If type is "tcp" then the Port of the printer
+   * @param {number} [data.mmFeedPaper] - Millimeter distance feed paper at the end
+   * @param {number} [data.dotsFeedPaper] - Distance feed paper at the end
+   * @param {boolean} [data.cut] - Cut the paper after printing
+   * @param {string} data.templateId - Name of the template
+   * @param {Object} [data.variables] - Values for the placeholders
+   * @param {function} success
+   * @param {function} error
+   */
+  printTemplate(data: PrintTemplate, success: () => void, error: (value: ErrorResult) => void): void;
+
+  /**
+   * Print already encoded ESC/POS bytes without converting them
+   *
+   * @param {Object[]} data - Data object
+   * @param {"bluetooth"|"tcp"|"usb"} data.type - List all bluetooth or usb printers
+   * @param {string|number} [data.id] - ID of printer to find (Bluetooth: address, TCP: Use address + port instead, USB: deviceId)
+   * @param {string} [data.address] - If type is "tcp" then the IP Address of the printer
+   * @param {number} [data.port] - If type is "tcp" then the Port of the printer
+   * @param {ArrayBuffer|Uint8Array} [data.bytes] - Bytes to be printed
+   * @param {string} [data.base64] - Base64 encoded bytes to be printed, if data.bytes is not set
+   * @param {number} [data.chunkSize] - Number of bytes written at once (default depends on the printer type)
+   * @param {number} [data.mmFeedPaper] - Millimeter distance feed paper at the end
+   * @param {number} [data.dotsFeedPaper] - Distance feed paper at the end
+   * @param {boolean} [data.cut] - Cut the paper after printing
+   * @param {function} success
+   * @param {function} error
+   */
+  printRawBytes(data: PrintRawBytes, success: () => void, error: (value: ErrorResult) => void): void;
+
+  /**
+   * Add a formatted text to the print queue of the printer. Jobs for the same printer are printed
+   * one after another, jobs for different printers are printed in parallel.
+   * The success callback is called multiple times with the job progress (queued, printing, done).
+   * @see https://github.com/DantSu/ESCPOS-ThermalPrinter-Android#formatted-text--syntax-guide
+   *
+   * @param {Object[]} data - Data object
+   * @param {"bluetooth"|"tcp"|"usb"} data.type - List all bluetooth or usb printers
+   * @param {string|number} [data.id] - ID of printer to find (Bluetooth: address, TCP: Use address + port instead, USB: deviceId)
+   * @param {string} [data.address] - If type is "tcp" then the IP Address of the printer
+   * @param {number} [data.port] - If type is "tcp" then the Port of the printer
+   * @param {number} [data.mmFeedPaper] - Millimeter distance feed paper at the end
+   * @param {number} [data.dotsFeedPaper] - Distance feed paper at the end
+   * @param {boolean} [data.cut] - Cut the paper after printing
+   * @param {string} data.text - Formatted text to be printed
+   * @param {function} success
+   * @param {function} error
+   */
+  enqueuePrint(data: EnqueuePrint, success: (value: PrintJob) => void, error: (value: PrintJob | ErrorResult) => void): void;
+
+  /**
+   * Save a formatted text in the spool on the device and print it in the background. The call
+   * returns as soon as the job is stored. If the printer is not reachable the job is retried with
+   * increasing delays, also after a restart of the app, until it is printed or cancelled. A job
+   * that fails for another reason, e.g. invalid formatted text, is not retried.
+   * @see https://github.com/DantSu/ESCPOS-ThermalPrinter-Android#formatted-text--syntax-guide
+   *
+   * @param {Object[]} data - Data object
+   * @param {"bluetooth"|"tcp"|"usb"} data.type - List all bluetooth or usb printers
+   * @param {string|number} [data.id] - ID of printer to find (Bluetooth: address, TCP: Use address + port instead, USB: deviceId)
+   * @param {string} [data.address] - If type is "tcp" then the IP Address of the printer
+   * @param {number} [data.port] - If type is "tcp" then the Port of the printer
+   * @param {number} [data.mmFeedPaper] - Millimeter distance feed paper at the end
+   * @param {number} [data.dotsFeedPaper] - Distance feed paper at the end
+   * @param {boolean} [data.cut] - Cut the paper after printing
+   * @param {string} data.text - Formatted text to be printed
+   * @param {string} [data.jobId] - Unique ID of the job, a job with an ID that is already spooled or was printed recently is ignored
+   * @param {number} [data.maxAttempts] - Give up after this number of attempts (default 0 = retry until cancelled)
+   * @param {function} success
+   * @param {function} error
+   */
+  spoolPrint(data: SpoolPrint, success: (value: SpoolPrintResult) => void, error: (value: ErrorResult) => void): void;
+
+  /**
+   * Get the jobs waiting in the spool
+   *
+   * @param {Object} [data] - Data object
+   * @param {string} [data.printerId] - Only list the jobs of this printer (or type, id, address and port)
+   * @param {function} success
+   * @param {function} error
+   */
+  getSpooledJobs(data: PrinterToUse | null, success: (value: SpooledJob[]) => void, error: (value: ErrorResult) => void): void;
+
+  /**
+   * Remove a job from the spool
+   *
+   * @param {Object} data - Data object
+   * @param {string} data.jobId - ID of the job returned by spoolPrint
+   * @param {function} success
+   * @param {function} error
+   */
+  cancelSpooledJob(data: { jobId: string; }, success: () => void, error: (value: ErrorResult) => void): void;
+
+  /**
+   * Register a group of printers which can be printed on with printToGroup
+   *
+   * @param {Object} data - Data object
+   * @param {string} data.groupId - ID of the group
+   * @param {Object[]} data.printers - Printers of the group (printerId or type, id, address and port) with optional
+   * overrides like printerWidthMM or printerNbrCharactersPerLine
+   * @param {function} success
+   * @param {function} error
+   */
+  configureGroup(data: ConfigureGroup, success: (value: { groupId: string; printers: number; }) => void, error: (value: ErrorResult) => void): void;
+
+  /**
+   * Print a formatted text on all printers of a group in parallel
+   *
+   * @param {Object} data - Data object
+   * @param {string} [data.groupId] - ID of the group registered with configureGroup
+   * @param {Object[]} [data.printers] - Printers of the group, replaces groupId
+   * @param {string} data.text - Formatted text to be printed
+   * @param {boolean} [data.cut] - Cut the paper after printing
+   * @param {number} [data.printerDpi] - Printer DPI for printers which don't set it themselves or in their profile
+   * @param {number} [data.printerWidthMM] - Paper width in mm for printers which don't set it themselves or in their profile
+   * @param {number} [data.printerNbrCharactersPerLine] - Characters per line for printers which don't set it themselves or in their profile
+   * @param {function} success
+   * @param {function} error
+   */
+  printToGroup(data: PrintToGroup, success: (value: PrintToGroupResult) => void, error: (value: ErrorResult) => void): void;
+
+  /**
+   * Look up and connect printers in the background before the first print. Without data all
+   * printers registered with configurePrinter are warmed up. Warmed up printers are reconnected
+   * automatically when the app is resumed.
+   *
+   * @param {Object} [data] - Printer to warm up (printerId or type, id, address and port)
+   * @param {Object[]} [data.printers] - List of printers to warm up
+   * @param {function} success
+   * @param {function} error
+   */
+  warmUp(data: PrinterToUse | { printers: PrinterToUse[] } | null, success: (value: WarmUpResult[]) => void, error: (value: ErrorResult) => void): void;
+
+  /**
+   * Get the status of the print queues or of a single job
+   *
+   * @param {Object} [data] - Data object
+   * @param {string} [data.jobId] - ID of the job returned by enqueuePrint
+   * @param {function} success
+   * @param {function} error
+   */
+  getQueueStatus(data: { jobId?: string; } | null, success: (value: PrintQueueStatus | PrintJob) => void, error: (value: ErrorResult) => void): void;
+
+  /**
+   * Query the real-time status of the printer (DLE EOT). Supported for Bluetooth, TCP and virtual printers.
+   *
+   * @param {Object} data - Printer (printerId or type, id, address and port)
+   * @param {number} [data.timeout] - Milliseconds to wait for every answer of the printer (default 1000)
+   * @param {function} success
+   * @param {function} error
+   */
+  getPrinterStatus(data: PrinterToUse & { timeout?: number; }, success: (value: PrinterStatus) => void, error: (value: ErrorResult) => void): void;
+
+  /**
+   * Get the statistics of the connection pool (open connections, hits, misses, reconnects and evictions)
+   *
+   * @param {function} success
+   * @param {function} error
+   */
+  getConnectionStats(success: (value: ConnectionStats) => void, error: (value: ErrorResult) => void): void;
+
+  /**
+   * Get the timings of the print path stages (lookup, connect, printer, render, image, write, total)
+   * as p50/p95/p99 and the bytes, jobs, reconnects and failures per printer. With an interval the
+   * metrics are pushed to the success callback periodically, an interval of 0 stops the push.
+   *
+   * @param {Object} [data] - Data object
+   * @param {number} [data.interval] - Push the metrics every interval ms
+   * @param {function} success
+   * @param {function} error
+   */
+  getMetrics(data: { interval?: number; } | null, success: (value: Metrics) => void, error: (value: ErrorResult) => void): void;
+
+  /**
+   * Reset all metrics
+   *
+   * @param {function} success
+   * @param {function} error
+   */
+  resetMetrics(success: () => void, error: (value: ErrorResult) => void): void;
+
+  /**
+   * Register the connection and printer settings once, later calls only need the returned printerId
+   *
+   * @param {Object[]} data - Data object
+   * @param {string} [data.printerId] - Name for the printer (default: connection key i. e. "tcp-192.168.1.123:9100")
+   * @param {"bluetooth"|"tcp"|"usb"} data.type - List all bluetooth or usb printers
+   * @param {string|number} [data.id] - ID of printer to find (Bluetooth: address, TCP: Use address + port instead, USB: deviceId)
+   * @param {string} [data.address] - If type is "tcp" then the IP Address of the printer
+   * @param {number} [data.port] - If type is "tcp" then the Port of the printer
+   * @param {function} success
+   * @param {function} error
+   */
+  configurePrinter(data: PrinterToUse, success: (value: { printerId: string; }) => void, error: (value: ErrorResult) => void): void;
+
   /**
    * Get the printer encoding when available
    *
@@ -152,6 +769,60 @@ export interface ThermalPrinterPlugin {
    */
   requestBTPermissions(data: PrinterToUse, success: (value: RequestPermissionsResult) => any, error: (value: ErrorResult) => void): void;
 
+  /**
+   * Print a picture. The picture is scaled to the paper width and sent to the printer in bands,
+   * so also very tall pictures can be printed with little memory.
+   *
+   * @param {Object[]} data - Data object
+   * @param {"bluetooth"|"tcp"|"usb"} data.type - List all bluetooth or usb printers
+   * @param {string|number} [data.id] - ID of printer to find (Bluetooth: address, TCP: Use address + port instead, USB: deviceId)
+   * @param {string} [data.address] - If type is "tcp" then the IP Address of the printer
+   * @param {number} [data.port] - If type is "tcp" then the Port of the printer
+   * @param {number} [data.printerDpi] - Printer DPI
+   * @param {number} [data.printerWidthMM] - Paper Width in mm
+   * @param {ArrayBuffer|Uint8Array} [data.bytes] - Picture file (PNG, JPEG, ...) to print
+   * @param {string} [data.base64] - Base64 encoded picture string to print, if data.bytes is not set
+   * @param {"left"|"center"|"right"} [data.align] - Alignment of the picture (default center)
+   * @param {boolean} [data.dither] - Dither the picture instead of a black/white threshold (default true)
+   * @param {number} [data.bandHeight] - Number of pixel rows sent at once (default 128, max 255)
+   * @param {number} [data.mmFeedPaper] - Millimeter distance feed paper at the end
+   * @param {number} [data.dotsFeedPaper] - Distance feed paper at the end
+   * @param {boolean} [data.cut] - Cut the paper after printing
+   * @param {function} success
+   * @param {function} error
+   */
+  printImage(data: PrintImage, success: () => void, error: (value: ErrorResult) => void): void;
+
+  /**
+   * Convert a picture for the printer once and keep it in the image cache.
+   * The returned reference can be printed with <img ref="..."></img> in formatted texts.
+   *
+   * @param {Object[]} data - Data object
+   * @param {number} [data.printerDpi] - Printer DPI
+   * @param {number} [data.printerWidthMM] - Paper Width in mm
+   * @param {ArrayBuffer|Uint8Array} [data.bytes] - Picture file (PNG, JPEG, ...) to convert
+   * @param {string} [data.base64] - Base64 encoded picture string to convert, if data.bytes is not set
+   * @param {function} success
+   * @param {function} error
+   */
+  cacheImage(data: CacheImage, success: (value: CacheImageResult) => void, error: (value: ErrorResult) => void): void;
+
+  /**
+   * Get the statistics of the image cache
+   *
+   * @param {function} success
+   * @param {function} error
+   */
+  getImageCacheStats(success: (value: ImageCacheStats) => void, error: (value: ErrorResult) => void): void;
+
+  /**
+   * Remove all pictures from the image cache
+   *
+   * @param {function} success
+   * @param {function} error
+   */
+  clearImageCache(success: () => void, error: (value: ErrorResult) => void): void;
+
   /**
    * Convert Drawable instance to a hexadecimal string of the image data
    * Note: Supports only 255px height 
@@ -161,9 +832,11 @@ export interface ThermalPrinterPlugin {
    * @param {string|number} [data.id] - ID of printer to find (Bluetooth: address, TCP: Use address + port instead, USB: deviceId)
    * @param {string} [data.address] - If type is "tcp" then the IP Address of the printer
    * @param {number} [data.port] - If type is "tcp" then the Port of the printer
-   * @param {string} data.base64 - Base64 encoded picture string to convert
+   * @param {ArrayBuffer|Uint8Array} [data.bytes] - Picture file (PNG, JPEG, ...) to convert
+   * @param {string} [data.base64] - Base64 encoded picture string to convert, if data.bytes is not set
+   * @param {boolean} [data.binary] - Return the image data as ArrayBuffer instead of a hexadecimal string
    * @param {function} success
    * @param {function} error
    */
-  bitmapToHexadecimalString(data: BitmapToHexadecimalString, success: (value: string) => any, error: (value: ErrorResult) => void): void;
+  bitmapToHexadecimalString(data: BitmapToHexadecimalString, success: (value: string | ArrayBuffer) => any, error: (value: ErrorResult) => void): void;
 }
@@ -1,11 +1,31 @@
 /* global cordova, module */
 
+/**
+ * Pass data.bytes as separate ArrayBuffer argument instead of inside the JSON data, so the native
+ * side can decode it once without a base64 string in the data object.
+ */
+function execWithBytes(action, data, successCallback, errorCallback) {
+  var bytes = data.bytes;
+  if (!bytes) {
+    cordova.exec(successCallback, errorCallback, 'ThermalPrinter', action, [data]);
+    return;
+  }
+  var options = Object.assign({}, data);
+  delete options.bytes;
+  if (ArrayBuffer.isView(bytes)) {
+    bytes = bytes.byteOffset === 0 && bytes.byteLength === bytes.buffer.byteLength
+      ? bytes.buffer
+      : bytes.buffer.slice(bytes.byteOffset, bytes.byteOffset + bytes.byteLength);
+  }
+  cordova.exec(successCallback, errorCallback, 'ThermalPrinter', action, [options, bytes]);
+}
+
 module.exports = {
   /**
    * List available printers
    *
    * @param {Object} data - Data object
-   * @param {"bluetooth"|"usb"} data.type - Type of list: bluetooth or usb
+   * @param {"bluetooth"|"tcp"|"usb"|"virtual"} data.type - Type of list: bluetooth, usb, tcp (printers found by scanNetworkPrinters) or virtual
    * @param {function} successCallback - Result on success
    * @param {function} errorCallback - Result on failure
    */
@@ -13,6 +33,97 @@ module.exports = {
     cordova.exec(successCallback, errorCallback, 'ThermalPrinter', 'listPrinters', [data]);
   },
 
+  /**
+   * Watch for printers found or lost in the background (paired and discovered Bluetooth devices,
+   * attached USB devices and network printers). The success callback is called multiple times:
+   * first with the event "started" and the watchId, then with a "found" event for every known
+   * printer and afterwards with a "found" or "lost" event for every change. A failed network scan
+   * is reported with an "error" event; the watcher keeps running.
+   *
+   * @param {Object} [data] - Data object
+   * @param {Array<"bluetooth"|"tcp"|"usb">} [data.types] - Only report printers of these types (default all)
+   * @param {boolean} [data.discoverBluetooth] - Start a Bluetooth discovery for unpaired printers
+   * @param {boolean} [data.scanNetwork] - Scan the local network for printers (see scanNetworkPrinters)
+   * @param {string} [data.subnet] - Subnet to scan in CIDR notation (default the /24 network of the device)
+   * @param {number} [data.port] - Port to probe (default 9100)
+   * @param {number} [data.timeout] - Connect timeout per host in ms (default 500)
+   * @param {number} [data.parallelism] - Number of hosts probed at once (default 32)
+   * @param {function} successCallback - Result on success
+   * @param {function} errorCallback - Result on failure
+   */
+  watchPrinters: function(data, successCallback, errorCallback) {
+    cordova.exec(successCallback, errorCallback, 'ThermalPrinter', 'watchPrinters', [data]);
+  },
+
+  /**
+   * Stop watching for printers
+   *
+   * @param {Object} data - Data object
+   * @param {string} data.watchId - ID returned by watchPrinters
+   * @param {function} successCallback - Result on success
+   * @param {function} errorCallback - Result on failure
+   */
+  unwatchPrinters: function(data, successCallback, errorCallback) {
+    cordova.exec(successCallback, errorCallback, 'ThermalPrinter', 'unwatchPrinters', [data]);
+  },
+
+  /**
+   * Scan the local network for printers by probing every host of the subnet on the printer port.
+   * Only a limited number of hosts is probed at once.
+   *
+   * @param {Object} [data] - Data object
+   * @param {string} [data.subnet] - Subnet to scan in CIDR notation, prefix length 22 to 30 (default the /24 network of the device)
+   * @param {number} [data.port] - Port to probe (default 9100)
+   * @param {number} [data.timeout] - Connect timeout per host in ms (default 500)
+   * @param {number} [data.parallelism] - Number of hosts probed at once (default 32)
+   * @param {function} successCallback - Result on success
+   * @param {function} errorCallback - Result on failure
+   */
+  scanNetworkPrinters: function(data, successCallback, errorCallback) {
+    cordova.exec(successCallback, errorCallback, 'ThermalPrinter', 'scanNetworkPrinters', [data]);
+  },
+
+  /**
+   * Get the bytes captured by a virtual printer (type "virtual")
+   *
+   * @param {Object} data - Data object
+   * @param {string} [data.id] - ID of the virtual printer (default "default")
+   * @param {boolean} [data.clear] - Clear the captured bytes
+   * @param {boolean} [data.binary] - Return only the captured bytes as ArrayBuffer
+   * @param {function} successCallback - Captured bytes as base64 and write statistics, or ArrayBuffer if data.binary is set
+   * @param {function} errorCallback - Result on failure
+   */
+  getVirtualOutput: function(data, successCallback, errorCallback) {
+    cordova.exec(successCallback, errorCallback, 'ThermalPrinter', 'getVirtualOutput', [data]);
+  },
+
+  /**
+   * Start a local TCP server on 127.0.0.1 which accepts print data like a network printer and
+   * discards it. Print to it with type "tcp", address "127.0.0.1" and the returned port.
+   *
+   * @param {Object} [data] - Data object
+   * @param {number} [data.port] - Port to listen on (default a free port)
+   * @param {number} [data.latencyMs] - Delay before a status request is answered
+   * @param {number} [data.bytesPerSecond] - Limit of the read throughput (default unlimited)
+   * @param {function} successCallback - Address, port and statistics of the server
+   * @param {function} errorCallback - Result on failure
+   */
+  startVirtualServer: function(data, successCallback, errorCallback) {
+    cordova.exec(successCallback, errorCallback, 'ThermalPrinter', 'startVirtualServer', [data]);
+  },
+
+  /**
+   * Stop a TCP server started with startVirtualServer
+   *
+   * @param {Object} data - Data object
+   * @param {number} data.port - Port of the server
+   * @param {function} successCallback - Statistics of the server
+   * @param {function} errorCallback - Result on failure
+   */
+  stopVirtualServer: function(data, successCallback, errorCallback) {
+    cordova.exec(successCallback, errorCallback, 'ThermalPrinter', 'stopVirtualServer', [data]);
+  },
+
   /**
    * Print a formatted text and feed paper
    * @see https://github.com/DantSu/ESCPOS-ThermalPrinter-Android#formatted-text--syntax-guide
@@ -51,6 +162,274 @@ module.exports = {
     cordova.exec(successCallback, errorCallback, 'ThermalPrinter', 'printFormattedTextAndCut', [data]);
   },
 
+  /**
+   * Print several formatted texts over one connection in a single call
+   * @see https://github.com/DantSu/ESCPOS-ThermalPrinter-Android#formatted-text--syntax-guide
+   *
+   * @param {Object[]} data - Data object
+   * @param {"bluetooth"|"tcp"|"usb"} data.type - List all bluetooth or usb printers
+   * @param {string|number} [data.id] - ID of printer to find (Bluetooth: address, TCP: Use address + port instead, USB: deviceId)
+   * @param {string} [data.address] - If type is "tcp" then the IP Address of the printer
+   * @param {number} [data.port] - If type is "tcp" then the Port of the printer
+   * @param {Object[]} data.documents - Documents to be printed
+   * @param {string} data.documents[].text - Formatted text to be printed
+   * @param {boolean} [data.documents[].cut] - Cut the paper after the document
+   * @param {number} [data.documents[].mmFeedPaper] - Millimeter distance feed paper at the end of the document
+   * @param {number} [data.documents[].dotsFeedPaper] - Distance feed paper at the end of the document
+   * @param {function} successCallback - Result per document
+   * @param {function} errorCallback - Result on failure
+   */
+  printBatch: function(data, successCallback, errorCallback) {
+    cordova.exec(successCallback, errorCallback, 'ThermalPrinter', 'printBatch', [data]);
+  },
+
+  /**
+   * Register a formatted text with {{placeholders}} as template. The lines without placeholders are
+   * converted only once per printer configuration.
+   * @see https://github.com/DantSu/ESCPOS-ThermalPrinter-Android#formatted-text--syntax-guide
+   *
+   * @param {Object} data - Data object
+   * @param {string} data.templateId - Name of the template
+   * @param {string} data.text - Formatted text with placeholders i. e. "[L]Total[R]{{total}}"
+   * @param {function} successCallback - Result on success
+   * @param {function} errorCallback - Result on failure
+   */
+  registerTemplate: function(data, successCallback, errorCallback) {
+    cordova.exec(successCallback, errorCallback, 'ThermalPrinter', 'registerTemplate', [data]);
+  },
+
+  /**
+   * Print a registered template, the placeholders are replaced by the given variables
+   *
+   * @param {Object[]} data - Data object
+   * @param {"bluetooth"|"tcp"|"usb"} data.type - List all bluetooth or usb printers
+   * @param {string|number} [data.id] - ID of printer to find (Bluetooth: address, TCP: Use address + port instead, USB: deviceId)
+   * @param {string} [data.address] - If type is "tcp" then the IP Address of the printer
+   * @param {number} [data.port] - If type is "tcp" then the Port of the printer
+   * @param {number} [data.mmFeedPaper] - Millimeter distance feed paper at the end
+   * @param {number} [data.dotsFeedPaper] - Distance feed paper at the end
+   * @param {boolean} [data.cut] - Cut the paper after printing
+   * @param {string} data.templateId - Name of the template
+   * @param {Object} [data.variables] - Values for the placeholders
+   * @param {function} successCallback - Result on success
+   * @param {function} errorCallback - Result on failure
+   */
+  printTemplate: function(data, successCallback, errorCallback) {
+    cordova.exec(successCallback, errorCallback, 'ThermalPrinter', 'printTemplate', [data]);
+  },
+
+  /**
+   * Print already encoded ESC/POS bytes without converting them
+   *
+   * @param {Object[]} data - Data object
+   * @param {"bluetooth"|"tcp"|"usb"} data.type - List all bluetooth or usb printers
+   * @param {string|number} [data.id] - ID of printer to find (Bluetooth: address, TCP: Use address + port instead, USB: deviceId)
+   * @param {string} [data.address] - If type is "tcp" then the IP Address of the printer
+   * @param {number} [data.port] - If type is "tcp" then the Port of the printer
+   * @param {ArrayBuffer|Uint8Array} [data.bytes] - Bytes to be printed
+   * @param {string} [data.base64] - Base64 encoded bytes to be printed, if data.bytes is not set
+   * @param {number} [data.chunkSize] - Number of bytes written at once (default depends on the printer type)
+   * @param {number} [data.mmFeedPaper] - Millimeter distance feed paper at the end
+   * @param {number} [data.dotsFeedPaper] - Distance feed paper at the end
+   * @param {boolean} [data.cut] - Cut the paper after printing
+   * @param {function} successCallback - Result on success
+   * @param {function} errorCallback - Result on failure
+   */
+  printRawBytes: function(data, successCallback, errorCallback) {
+    execWithBytes('printRawBytes', data, successCallback, errorCallback);
+  },
+
+  /**
+   * Add a formatted text to the print queue of the printer. Jobs for the same printer are printed
+   * one after another, jobs for different printers are printed in parallel.
+   * The success callback is called multiple times with the job progress (queued, printing, done).
+   * @see https://github.com/DantSu/ESCPOS-ThermalPrinter-Android#formatted-text--syntax-guide
+   *
+   * @param {Object[]} data - Data object
+   * @param {"bluetooth"|"tcp"|"usb"} data.type - List all bluetooth or usb printers
+   * @param {string|number} [data.id] - ID of printer to find (Bluetooth: address, TCP: Use address + port instead, USB: deviceId)
+   * @param {string} [data.address] - If type is "tcp" then the IP Address of the printer
+   * @param {number} [data.port] - If type is "tcp" then the Port of the printer
+   * @param {number} [data.mmFeedPaper] - Millimeter distance feed paper at the end
+   * @param {number} [data.dotsFeedPaper] - Distance feed paper at the end
+   * @param {boolean} [data.cut] - Cut the paper after printing
+   * @param {string} data.text - Formatted text to be printed
+   * @param {function} successCallback - Job progress (jobId, status, position)
+   * @param {function} errorCallback - Result on failure
+   */
+  enqueuePrint: function(data, successCallback, errorCallback) {
+    cordova.exec(successCallback, errorCallback, 'ThermalPrinter', 'enqueuePrint', [data]);
+  },
+
+  /**
+   * Save a formatted text in the spool on the device and print it in the background. The call
+   * returns as soon as the job is stored. If the printer is not reachable the job is retried with
+   * increasing delays, also after a restart of the app, until it is printed or cancelled. A job
+   * that fails for another reason, e.g. invalid formatted text, is not retried.
+   * @see https://github.com/DantSu/ESCPOS-ThermalPrinter-Android#formatted-text--syntax-guide
+   *
+   * @param {Object[]} data - Data object
+   * @param {"bluetooth"|"tcp"|"usb"} data.type - List all bluetooth or usb printers
+   * @param {string|number} [data.id] - ID of printer to find (Bluetooth: address, TCP: Use address + port instead, USB: deviceId)
+   * @param {string} [data.address] - If type is "tcp" then the IP Address of the printer
+   * @param {number} [data.port] - If type is "tcp" then the Port of the printer
+   * @param {number} [data.mmFeedPaper] - Millimeter distance feed paper at the end
+   * @param {number} [data.dotsFeedPaper] - Distance feed paper at the end
+   * @param {boolean} [data.cut] - Cut the paper after printing
+   * @param {string} data.text - Formatted text to be printed
+   * @param {string} [data.jobId] - Unique ID of the job, a job with an ID that is already spooled or was printed recently is ignored
+   * @param {number} [data.maxAttempts] - Give up after this number of attempts (default 0 = retry until cancelled)
+   * @param {function} successCallback - Result on success
+   * @param {function} errorCallback - Result on failure
+   */
+  spoolPrint: function(data, successCallback, errorCallback) {
+    cordova.exec(successCallback, errorCallback, 'ThermalPrinter', 'spoolPrint', [data]);
+  },
+
+  /**
+   * Get the jobs waiting in the spool
+   *
+   * @param {Object} [data] - Data object
+   * @param {string} [data.printerId] - Only list the jobs of this printer (or type, id, address and port)
+   * @param {function} successCallback - Result on success
+   * @param {function} errorCallback - Result on failure
+   */
+  getSpooledJobs: function(data, successCallback, errorCallback) {
+    cordova.exec(successCallback, errorCallback, 'ThermalPrinter', 'getSpooledJobs', [data]);
+  },
+
+  /**
+   * Remove a job from the spool
+   *
+   * @param {Object} data - Data object
+   * @param {string} data.jobId - ID of the job returned by spoolPrint
+   * @param {function} successCallback - Result on success
+   * @param {function} errorCallback - Result on failure
+   */
+  cancelSpooledJob: function(data, successCallback, errorCallback) {
+    cordova.exec(successCallback, errorCallback, 'ThermalPrinter', 'cancelSpooledJob', [data]);
+  },
+
+  /**
+   * Register a group of printers which can be printed on with printToGroup
+   *
+   * @param {Object} data - Data object
+   * @param {string} data.groupId - ID of the group
+   * @param {Object[]} data.printers - Printers of the group (printerId or type, id, address and port) with optional
+   * overrides like printerWidthMM or printerNbrCharactersPerLine
+   * @param {function} successCallback - Result on success
+   * @param {function} errorCallback - Result on failure
+   */
+  configureGroup: function(data, successCallback, errorCallback) {
+    cordova.exec(successCallback, errorCallback, 'ThermalPrinter', 'configureGroup', [data]);
+  },
+
+  /**
+   * Print a formatted text on all printers of a group in parallel
+   *
+   * @param {Object} data - Data object
+   * @param {string} [data.groupId] - ID of the group registered with configureGroup
+   * @param {Object[]} [data.printers] - Printers of the group, replaces groupId
+   * @param {string} data.text - Formatted text to be printed
+   * @param {boolean} [data.cut] - Cut the paper after printing
+   * @param {number} [data.printerDpi] - Printer DPI for printers which don't set it themselves or in their profile
+   * @param {number} [data.printerWidthMM] - Paper width in mm for printers which don't set it themselves or in their profile
+   * @param {number} [data.printerNbrCharactersPerLine] - Characters per line for printers which don't set it themselves or in their profile
+   * @param {function} successCallback - Result per printer (printerKey, success, queuedMs, durationMs, error)
+   * @param {function} errorCallback - Result on failure
+   */
+  printToGroup: function(data, successCallback, errorCallback) {
+    cordova.exec(successCallback, errorCallback, 'ThermalPrinter', 'printToGroup', [data]);
+  },
+
+  /**
+   * Look up and connect printers in the background before the first print. Without data all
+   * printers registered with configurePrinter are warmed up. Warmed up printers are reconnected
+   * automatically when the app is resumed.
+   *
+   * @param {Object} [data] - Printer to warm up (printerId or type, id, address and port)
+   * @param {Object[]} [data.printers] - List of printers to warm up
+   * @param {function} successCallback - Result per printer (printerKey, connected, durationMs, error)
+   * @param {function} errorCallback - Result on failure
+   */
+  warmUp: function(data, successCallback, errorCallback) {
+    cordova.exec(successCallback, errorCallback, 'ThermalPrinter', 'warmUp', [data]);
+  },
+
+  /**
+   * Get the status of the print queues or of a single job
+   *
+   * @param {Object} [data] - Data object
+   * @param {string} [data.jobId] - ID of the job returned by enqueuePrint
+   * @param {function} successCallback - Result on success
+   * @param {function} errorCallback - Result on failure
+   */
+  getQueueStatus: function(data, successCallback, errorCallback) {
+    cordova.exec(successCallback, errorCallback, 'ThermalPrinter', 'getQueueStatus', [data || {}]);
+  },
+
+  /**
+   * Query the real-time status of the printer (DLE EOT). Supported for Bluetooth, TCP and virtual printers.
+   *
+   * @param {Object} data - Printer (printerId or type, id, address and port)
+   * @param {number} [data.timeout] - Milliseconds to wait for every answer of the printer (default 1000)
+   * @param {function} successCallback - Status of the printer
+   * @param {function} errorCallback - Result on failure
+   */
+  getPrinterStatus: function(data, successCallback, errorCallback) {
+    cordova.exec(successCallback, errorCallback, 'ThermalPrinter', 'getPrinterStatus', [data]);
+  },
+
+  /**
+   * Get the statistics of the connection pool (open connections, hits, misses, reconnects and evictions)
+   *
+   * @param {function} successCallback - Result on success
+   * @param {function} errorCallback - Result on failure
+   */
+  getConnectionStats: function(successCallback, errorCallback) {
+    cordova.exec(successCallback, errorCallback, 'ThermalPrinter', 'getConnectionStats', []);
+  },
+
+  /**
+   * Get the timings of the print path stages (lookup, connect, printer, render, image, write, total)
+   * as p50/p95/p99 and the bytes, jobs, reconnects and failures per printer. With an interval the
+   * metrics are pushed to the success callback periodically, an interval of 0 stops the push.
+   *
+   * @param {Object} [data] - Data object
+   * @param {number} [data.interval] - Push the metrics every interval ms
+   * @param {function} successCallback - Result on success
+   * @param {function} errorCallback - Result on failure
+   */
+  getMetrics: function(data, successCallback, errorCallback) {
+    cordova.exec(successCallback, errorCallback, 'ThermalPrinter', 'getMetrics', [data]);
+  },
+
+  /**
+   * Reset all metrics
+   *
+   * @param {function} successCallback - Result on success
+   * @param {function} errorCallback - Result on failure
+   */
+  resetMetrics: function(successCallback, errorCallback) {
+    cordova.exec(successCallback, errorCallback, 'ThermalPrinter', 'resetMetrics', []);
+  },
+
+  /**
+   * Register the connection and printer settings once, later calls only need the returned printerId
+   *
+   * @param {Object[]} data - Data object
+   * @param {string} [data.printerId] - Name for the printer (default: connection key i. e. "tcp-192.168.1.123:9100")
+   * @param {"bluetooth"|"tcp"|"usb"} data.type - List all bluetooth or usb printers
+   * @param {string|number} [data.id] - ID of printer to find (Bluetooth: address, TCP: Use address + port instead, USB: deviceId)
+   * @param {string} [data.address] - If type is "tcp" then the IP Address of the printer
+   * @param {number} [data.port] - If type is "tcp" then the Port of the printer
+   * @param {function} successCallback - Result on success
+   * @param {function} errorCallback - Result on failure
+   */
+  configurePrinter: function(data, successCallback, errorCallback) {
+    cordova.exec(successCallback, errorCallback, 'ThermalPrinter', 'configurePrinter', [data]);
+  },
+
   /**
    * Get the printer encoding when available
    *
@@ -112,6 +491,68 @@ module.exports = {
     cordova.exec(successCallback, errorCallback, 'ThermalPrinter', 'requestBTPermissions', [data]);
   },
 
+  /**
+   * Print a picture. The picture is scaled to the paper width and sent to the printer in bands,
+   * so also very tall pictures can be printed with little memory.
+   *
+   * @param {Object[]} data - Data object
+   * @param {"bluetooth"|"tcp"|"usb"} data.type - List all bluetooth or usb printers
+   * @param {string|number} [data.id] - ID of printer to find (Bluetooth: address, TCP: Use address + port instead, USB: deviceId)
+   * @param {string} [data.address] - If type is "tcp" then the IP Address of the printer
+   * @param {number} [data.port] - If type is "tcp" then the Port of the printer
+   * @param {number} [data.printerDpi] - Printer DPI
+   * @param {number} [data.printerWidthMM] - Paper Width in mm
+   * @param {ArrayBuffer|Uint8Array} [data.bytes] - Picture file (PNG, JPEG, ...) to print
+   * @param {string} [data.base64] - Base64 encoded picture string to print, if data.bytes is not set
+   * @param {"left"|"center"|"right"} [data.align] - Alignment of the picture (default center)
+   * @param {boolean} [data.dither] - Dither the picture instead of a black/white threshold (default true)
+   * @param {number} [data.bandHeight] - Number of pixel rows sent at once (default 128, max 255)
+   * @param {number} [data.mmFeedPaper] - Millimeter distance feed paper at the end
+   * @param {number} [data.dotsFeedPaper] - Distance feed paper at the end
+   * @param {boolean} [data.cut] - Cut the paper after printing
+   * @param {function} successCallback - Result on success
+   * @param {function} errorCallback - Result on failure
+   */
+  printImage: function(data, successCallback, errorCallback) {
+    execWithBytes('printImage', data, successCallback, errorCallback);
+  },
+
+  /**
+   * Convert a picture for the printer once and keep it in the image cache.
+   * The returned reference can be printed with <img ref="..."></img> in formatted texts.
+   *
+   * @param {Object[]} data - Data object
+   * @param {number} [data.printerDpi] - Printer DPI
+   * @param {number} [data.printerWidthMM] - Paper Width in mm
+   * @param {ArrayBuffer|Uint8Array} [data.bytes] - Picture file (PNG, JPEG, ...) to convert
+   * @param {string} [data.base64] - Base64 encoded picture string to convert, if data.bytes is not set
+   * @param {function} successCallback - Result on success
+   * @param {function} errorCallback - Result on failure
+   */
+  cacheImage: function(data, successCallback, errorCallback) {
+    execWithBytes('cacheImage', data, successCallback, errorCallback);
+  },
+
+  /**
+   * Get the statistics of the image cache
+   *
+   * @param {function} successCallback - Result on success
+   * @param {function} errorCallback - Result on failure
+   */
+  getImageCacheStats: function(successCallback, errorCallback) {
+    cordova.exec(successCallback, errorCallback, 'ThermalPrinter', 'getImageCacheStats', []);
+  },
+
+  /**
+   * Remove all pictures from the image cache
+   *
+   * @param {function} successCallback - Result on success
+   * @param {function} errorCallback - Result on failure
+   */
+  clearImageCache: function(successCallback, errorCallback) {
+    cordova.exec(successCallback, errorCallback, 'ThermalPrinter', 'clearImageCache', []);
+  },
+
   /**
    * Convert Drawable instance to a hexadecimal string of the image data
    *
@@ -120,11 +561,13 @@ module.exports = {
    * @param {string|number} [data.id] - ID of printer to find (Bluetooth: address, TCP: Use address + port instead, USB: deviceId)
    * @param {string} [data.address] - If type is "tcp" then the IP Address of the printer
    * @param {number} [data.port] - If type is "tcp" then the Port of the printer
-   * @param {string} data.base64 - Base64 encoded picture string to convert
+   * @param {ArrayBuffer|Uint8Array} [data.bytes] - Picture file (PNG, JPEG, ...) to convert
+   * @param {string} [data.base64] - Base64 encoded picture string to convert, if data.bytes is not set
+   * @param {boolean} [data.binary] - Return the image data as ArrayBuffer instead of a hexadecimal string
    * @param {function} successCallback - Result on success
    * @param {function} errorCallback - Result on failure
    */
   bitmapToHexadecimalString: function(data, successCallback, errorCallback) {
-    cordova.exec(successCallback, errorCallback, 'ThermalPrinter', 'bitmapToHexadecimalString', [data]);
+    execWithBytes('bitmapToHexadecimalString', data, successCallback, errorCallback);
   },
 };